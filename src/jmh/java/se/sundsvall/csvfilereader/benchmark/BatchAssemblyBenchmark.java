@@ -0,0 +1,93 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+import se.sundsvall.csvfilereader.service.utility.CsvRowReader;
+
+/**
+ * Builds employee batches from already parsed rows, as Object[] rows in a fresh list per batch and as one reused
+ * ColumnBatch the way EmployeeImportService does before handing them to JDBC. Run with the gc profiler to compare
+ * allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchAssemblyBenchmark {
+
+	private static final int ROWS = 100_000;
+
+	@Param({
+		"100", "1000", "5000"
+	})
+	int batchSize;
+
+	private List<String[]> parsed;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Path dir = Files.createTempDirectory("batch-assembly-benchmark");
+		Path file = ExportGenerator.employees(dir, ROWS);
+
+		parsed = new ArrayList<>(ROWS);
+		try (CsvRowReader reader = CsvRowReader.open(CsvReaderType.MAPPED, file, EmployeeImportService.CSV_FORMAT)) {
+			reader.forEachRemaining(parsed::add);
+		}
+		Files.delete(file);
+		Files.delete(dir);
+	}
+
+	@Benchmark
+	public void objectArrayBatches(Blackhole blackhole) {
+		List<Object[]> batch = new ArrayList<>(batchSize);
+		for (String[] values : parsed) {
+			Object[] row = Arrays.copyOf(values, values.length + 1, Object[].class);
+			row[values.length] = true;
+			batch.add(row);
+
+			if (batch.size() >= batchSize) {
+				blackhole.consume(batch);
+				batch = new ArrayList<>(batchSize);
+			}
+		}
+		blackhole.consume(batch);
+	}
+
+	@Benchmark
+	public void columnBatches(Blackhole blackhole) {
+		// Title, OrgId and ManagerCode deduplicated, as in EmployeeImportService
+		ColumnBatch batch = new ColumnBatch(EmployeeImportService.CSV_FORMAT.columns().length, batchSize, 5, 6, 9);
+		for (String[] values : parsed) {
+			batch.add(values);
+
+			if (batch.size() >= batchSize) {
+				blackhole.consume(batch.binding(true));
+				batch.clear();
+			}
+		}
+		blackhole.consume(batch.binding(true));
+	}
+}
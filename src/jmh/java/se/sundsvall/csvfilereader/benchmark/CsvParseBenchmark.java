@@ -0,0 +1,86 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.OrganizationImportService;
+import se.sundsvall.csvfilereader.service.utility.CsvFormat;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+import se.sundsvall.csvfilereader.service.utility.CsvRowReader;
+
+/**
+ * Parses a whole export file per operation, including the NULL/trim cleaning done by the readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CsvParseBenchmark {
+
+	@Param({
+		"10000", "100000", "1000000"
+	})
+	int rows;
+
+	@Param({
+		"JACKSON", "MAPPED"
+	})
+	CsvReaderType reader;
+
+	private Path dir;
+	private Path employees;
+	private Path organizations;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("csv-parse-benchmark");
+		employees = ExportGenerator.employees(dir, rows);
+		organizations = ExportGenerator.organizations(dir, rows);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(employees);
+		Files.deleteIfExists(organizations);
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public long employees(Blackhole blackhole) throws IOException {
+		return parse(employees, EmployeeImportService.CSV_FORMAT, blackhole);
+	}
+
+	@Benchmark
+	public long organizations(Blackhole blackhole) throws IOException {
+		return parse(organizations, OrganizationImportService.CSV_FORMAT, blackhole);
+	}
+
+	private long parse(Path file, CsvFormat<?> format, Blackhole blackhole) throws IOException {
+		long count = 0;
+		try (CsvRowReader rowReader = CsvRowReader.open(reader, file, format)) {
+			while (rowReader.hasNext()) {
+				blackhole.consume(rowReader.next());
+				count++;
+			}
+		}
+		return count;
+	}
+}
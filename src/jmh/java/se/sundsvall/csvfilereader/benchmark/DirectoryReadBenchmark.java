@@ -0,0 +1,134 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.api.DirectoryResource;
+import se.sundsvall.csvfilereader.api.model.Employee;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.db.JobLockRepository;
+import se.sundsvall.csvfilereader.service.DirectoryService;
+
+/**
+ * Latency of the read API lookups while the directory index is rebuilt and swapped over and over by another thread,
+ * as after every import. Sample time mode reports the percentiles per lookup, p0.99 is the number to watch. The
+ * readers call the resource directly, HTTP handling is not included.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DirectoryReadBenchmark {
+
+	// Organizations below each organization
+	private static final int FAN_OUT = 5;
+
+	@Param({
+		"10000", "100000"
+	})
+	int rows;
+
+	private JdbcTemplate jdbcTemplate;
+	private DirectoryService directoryService;
+	private DirectoryResource resource;
+	private String[] personIds;
+	private String[] emails;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:directory-read-benchmark;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		H2Schema.create(jdbcTemplate);
+		jdbcTemplate.execute("create table shedlock (name varchar(64) primary key, lock_until timestamp(3), locked_at timestamp(3), locked_by varchar(255))");
+
+		// A tree instead of the flat organizations of the schema, so that subtrees have some depth
+		List<Object[]> parents = new ArrayList<>();
+		for (int i = FAN_OUT; i <= ExportGenerator.ORGANIZATIONS; i++) {
+			parents.add(new Object[] {
+				String.valueOf(i / FAN_OUT), String.valueOf(i)
+			});
+		}
+		jdbcTemplate.batchUpdate("UPDATE organization SET parent_org_id = ? WHERE org_id = ?", parents);
+
+		personIds = new String[rows];
+		emails = new String[rows];
+		List<Object[]> employees = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			personIds[i] = String.valueOf(100_000 + i);
+			emails[i] = "anna.andersson" + i + "@sundsvall.se";
+			employees.add(new Object[] {
+				personIds[i], "Anna", "Andersson", "Lärare", String.valueOf(1 + i % ExportGenerator.ORGANIZATIONS), emails[i]
+			});
+		}
+		jdbcTemplate.batchUpdate("""
+			INSERT INTO employee (person_id, first_name, last_name, work_title, org_id, email, active_employee)
+			VALUES (?, ?, ?, ?, ?, ?, true)
+			""", employees);
+
+		directoryService = new DirectoryService(jdbcTemplate, new JobLockRepository(jdbcTemplate));
+		setField(directoryService, "enabled", true);
+		setField(directoryService, "orgJobName", "org-import");
+		setField(directoryService, "empJobName", "emp-import");
+		directoryService.refresh();
+		resource = new DirectoryResource(directoryService);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		jdbcTemplate.execute("drop table shedlock");
+		H2Schema.drop(jdbcTemplate);
+	}
+
+	@Benchmark
+	@Group("readWhileSwapping")
+	@GroupThreads(3)
+	public ResponseEntity<Employee> employeeByPersonId() {
+		return resource.getEmployee(personIds[ThreadLocalRandom.current().nextInt(rows)]);
+	}
+
+	@Benchmark
+	@Group("readWhileSwapping")
+	@GroupThreads(2)
+	public ResponseEntity<Employee> employeeByEmail() {
+		return resource.getEmployeeByEmail(emails[ThreadLocalRandom.current().nextInt(rows)]);
+	}
+
+	@Benchmark
+	@Group("readWhileSwapping")
+	@GroupThreads(2)
+	public ResponseEntity<List<Organization>> subtree() {
+		// Mostly upper levels, which have the larger subtrees
+		return resource.getSubtree(String.valueOf(1 + ThreadLocalRandom.current().nextInt(ExportGenerator.ORGANIZATIONS / FAN_OUT)));
+	}
+
+	@Benchmark
+	@Group("readWhileSwapping")
+	@GroupThreads(1)
+	public void refresh() {
+		directoryService.refresh();
+	}
+}
@@ -0,0 +1,118 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.db.ImportCheckpointRepository;
+import se.sundsvall.csvfilereader.db.ImportRunRepository;
+import se.sundsvall.csvfilereader.service.BatchSizerFactory;
+import se.sundsvall.csvfilereader.service.BulkLoadService;
+import se.sundsvall.csvfilereader.service.DeactivationMode;
+import se.sundsvall.csvfilereader.service.EmployeeDeactivationService;
+import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.HierarchyService;
+import se.sundsvall.csvfilereader.service.ImportEngine;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+import se.sundsvall.csvfilereader.service.MultiRowUpsertWriter;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+
+/**
+ * Full employee import, parse to batch upsert to deactivation sweep, against an in-process H2 database in MariaDB
+ * mode. Absolute numbers differ from a real MariaDB server, relative changes to the Java side are what it shows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EmployeeImportBenchmark {
+
+	@Param({
+		"10000", "100000"
+	})
+	int rows;
+
+	@Param({
+		"500", "1000", "5000"
+	})
+	int batchSize;
+
+	@Param({
+		"JACKSON", "MAPPED"
+	})
+	CsvReaderType reader;
+
+	@Param({
+		"BATCH", "MULTI_ROW"
+	})
+	ImportEngine engine;
+
+	private Path dir;
+	private Path employees;
+	private JdbcTemplate jdbcTemplate;
+	private EmployeeImportService employeeImportService;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("employee-import-benchmark");
+		employees = ExportGenerator.employees(dir, rows);
+
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:employee-import-benchmark;MODE=MariaDB;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		H2Schema.create(jdbcTemplate);
+
+		ImportMetrics importMetrics = new ImportMetrics(new SimpleMeterRegistry());
+		EmployeeDeactivationService deactivationService = new EmployeeDeactivationService(jdbcTemplate);
+		setField(deactivationService, "chunkSize", 1000);
+		setField(deactivationService, "pause", Duration.ZERO);
+		setField(deactivationService, "maxRatio", 1.0);
+		employeeImportService = new EmployeeImportService(jdbcTemplate, new BulkLoadService(jdbcTemplate, importMetrics, deactivationService), new OrganizationIdCache(jdbcTemplate), importMetrics,
+			new ImportCheckpointRepository(jdbcTemplate), new BatchSizerFactory(importMetrics),
+			new ImportRunRepository(jdbcTemplate), deactivationService, new MultiRowUpsertWriter(jdbcTemplate),
+			new HierarchyService(jdbcTemplate), new ImportThreads());
+		setField(employeeImportService, "batchSize", batchSize);
+		setField(employeeImportService, "csvReader", reader);
+		setField(employeeImportService, "engine", engine);
+		setField(employeeImportService, "deactivation", DeactivationMode.TIMESTAMP);
+		setField(employeeImportService, "writerThreads", 1);
+		setField(employeeImportService, "queueCapacity", 4);
+		setField(employeeImportService, "failedDir", dir.resolve("failed"));
+		setField(employeeImportService, "maxRejectedRows", 0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		H2Schema.drop(jdbcTemplate);
+		Files.deleteIfExists(employees);
+		Files.deleteIfExists(dir);
+	}
+
+	@Benchmark
+	public void importEmployees() {
+		employeeImportService.importEmployee(employees);
+	}
+}
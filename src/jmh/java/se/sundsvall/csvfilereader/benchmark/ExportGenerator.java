@@ -0,0 +1,75 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes synthetic EmpExport/OrgExport files with the same layout and value mix as the real exports. Output is
+ * deterministic for a given row count.
+ */
+final class ExportGenerator {
+
+	static final int ORGANIZATIONS = 500;
+
+	private static final String[] GIVEN_NAMES = {
+		"Anna", "Erik", "Åsa", "Lars", "Märta", "Johan", "Karin", "Per", "Eva", "Björn"
+	};
+	private static final String[] LAST_NAMES = {
+		"Andersson", "Johansson", "Karlsson", "Nilsson", "Eriksson", "Larsson", "Olsson", "Persson", "Svensson", "Gustafsson"
+	};
+	private static final String[] TITLES = {
+		"Lärare", "Undersköterska", "Handläggare", "Enhetschef", "Systemförvaltare", "Ekonom", "Sjuksköterska", "Förskollärare"
+	};
+
+	private ExportGenerator() {}
+
+	static Path employees(Path dir, int rows) throws IOException {
+		Path file = dir.resolve("EmpExport-" + rows + ".csv");
+		Random random = new Random(42);
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode\n");
+			for (int i = 0; i < rows; i++) {
+				String givenName = GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+				String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+				writer.write(String.join(";",
+					String.valueOf(100_000 + i),
+					givenName,
+					lastName,
+					random.nextInt(3) == 0 ? "NULL" : "070-" + (1_000_000 + random.nextInt(9_000_000)),
+					random.nextInt(4) == 0 ? "" : "060-" + (100_000 + random.nextInt(900_000)),
+					TITLES[random.nextInt(TITLES.length)],
+					String.valueOf(1 + random.nextInt(ORGANIZATIONS)),
+					(givenName + "." + lastName + i + "@sundsvall.se").toLowerCase(),
+					i == 0 ? "NULL" : String.valueOf(100_000 + random.nextInt(i)),
+					random.nextInt(10) == 0 ? "MGR" : " NULL "));
+				writer.write('\n');
+			}
+		}
+		return file;
+	}
+
+	static Path organizations(Path dir, int rows) throws IOException {
+		Path file = dir.resolve("OrgExport-" + rows + ".csv");
+		Random random = new Random(42);
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("CompanyId,OrgId,OrgName,ParentId,TreeLevel\n");
+			for (int i = 1; i <= rows; i++) {
+				int parent = i == 1 ? 0 : 1 + random.nextInt(i - 1);
+				writer.write(String.join(",",
+					"1",
+					String.valueOf(i),
+					i % 7 == 0 ? "\"Avdelning " + i + ", stab\"" : "Enhet " + i,
+					parent == 0 ? "NULL" : String.valueOf(parent),
+					String.valueOf(1 + Integer.numberOfTrailingZeros(i) % 6)));
+				writer.write('\n');
+			}
+		}
+		return file;
+	}
+}
@@ -0,0 +1,59 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The employee and organization tables as created by api-service-notifier, in H2 syntax.
+ */
+final class H2Schema {
+
+	private H2Schema() {}
+
+	static void create(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.execute("""
+			create table organization
+			(
+			    company_id    int,
+			    org_id        varchar(255) not null primary key,
+			    org_name      varchar(255),
+			    parent_org_id varchar(255),
+			    tree_level    int
+			)
+			""");
+		jdbcTemplate.execute("""
+			create table employee
+			(
+			    person_id       varchar(255) not null primary key,
+			    first_name      varchar(255),
+			    last_name       varchar(255),
+			    work_mobile     varchar(255),
+			    work_phone      varchar(255),
+			    work_title      varchar(255),
+			    org_id          varchar(255),
+			    email           varchar(255),
+			    manager_id      varchar(255),
+			    manager_code    varchar(255),
+			    active_employee boolean,
+			    updated_at      timestamp default current_timestamp
+			)
+			""");
+
+		List<Object[]> organizations = new ArrayList<>();
+		for (int i = 1; i <= ExportGenerator.ORGANIZATIONS; i++) {
+			organizations.add(new Object[] {
+				1, String.valueOf(i), "Enhet " + i, null, 1
+			});
+		}
+		organizations.add(new Object[] {
+			1, "UNKNOWN", "Övriga personer", "13", 2
+		});
+		jdbcTemplate.batchUpdate("INSERT INTO organization (company_id, org_id, org_name, parent_org_id, tree_level) VALUES (?, ?, ?, ?, ?)", organizations);
+	}
+
+	static void drop(JdbcTemplate jdbcTemplate) {
+		jdbcTemplate.execute("drop table employee");
+		jdbcTemplate.execute("drop table organization");
+	}
+}
@@ -0,0 +1,41 @@
+package se.sundsvall.csvfilereader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import se.sundsvall.csvfilereader.service.utility.ImportUtil;
+
+/**
+ * ImportUtil.nullIfNullString over the value mix found in the exports.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizationBenchmark {
+
+	private static final int VALUES = 8;
+
+	private final String[] values = {
+		"Andersson", "  Åsa ", "NULL", "", " null ", "anna.andersson@sundsvall.se", "070-1234567", "   "
+	};
+
+	@Benchmark
+	@OperationsPerInvocation(VALUES)
+	public void nullIfNullString(Blackhole blackhole) {
+		for (String value : values) {
+			blackhole.consume(ImportUtil.nullIfNullString(value));
+		}
+	}
+}
@@ -2,21 +2,20 @@ package se.sundsvall.csvfilereader;
 
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
-import se.sundsvall.csvfilereader.scheduler.Scheduler;
+import se.sundsvall.csvfilereader.scheduler.ImportJobGraph;
 import se.sundsvall.dept44.util.jacoco.ExcludeFromJacocoGeneratedCoverageReport;
 
 @ExcludeFromJacocoGeneratedCoverageReport
 @Component
 class StartupRunner implements CommandLineRunner {
-	private final Scheduler scheduler;
+	private final ImportJobGraph importJobGraph;
 
-	StartupRunner(Scheduler scheduler) {
-		this.scheduler = scheduler;
+	StartupRunner(ImportJobGraph importJobGraph) {
+		this.importJobGraph = importJobGraph;
 	}
 
 	@Override
 	public void run(String... args) {
-		scheduler.importOrganizationsJob();
-		scheduler.importEmployeesJob();
+		importJobGraph.runAll();
 	}
 }
@@ -0,0 +1,72 @@
+package se.sundsvall.csvfilereader.api;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import se.sundsvall.csvfilereader.api.model.Employee;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.service.DirectoryIndex;
+import se.sundsvall.csvfilereader.service.DirectoryService;
+
+/**
+ * Read-only lookups of the imported data, answered from the in-memory {@link DirectoryIndex} without touching the
+ * database.
+ */
+@RestController
+@Tag(name = "Directory", description = "Imported organizations and active employees")
+@ConditionalOnProperty(prefix = "directory", name = "enabled", havingValue = "true")
+public class DirectoryResource {
+
+	private final DirectoryService directoryService;
+
+	public DirectoryResource(DirectoryService directoryService) {
+		this.directoryService = directoryService;
+	}
+
+	@GetMapping(path = "/employees/{personId}", produces = APPLICATION_JSON_VALUE)
+	@Operation(summary = "Active employee by person id")
+	public ResponseEntity<Employee> getEmployee(@PathVariable String personId) {
+		return ResponseEntity.ok(index().employee(personId)
+			.orElseThrow(() -> notFound("No active employee with person id " + personId)));
+	}
+
+	@GetMapping(path = "/employees/email/{email}", produces = APPLICATION_JSON_VALUE)
+	@Operation(summary = "Active employee by email, ignoring case")
+	public ResponseEntity<Employee> getEmployeeByEmail(@PathVariable String email) {
+		return ResponseEntity.ok(index().employeeByEmail(email)
+			.orElseThrow(() -> notFound("No active employee with email " + email)));
+	}
+
+	@GetMapping(path = "/organizations/{orgId}", produces = APPLICATION_JSON_VALUE)
+	@Operation(summary = "Organization by org id")
+	public ResponseEntity<Organization> getOrganization(@PathVariable String orgId) {
+		return ResponseEntity.ok(index().organization(orgId)
+			.orElseThrow(() -> notFound("No organization with org id " + orgId)));
+	}
+
+	@GetMapping(path = "/organizations/{orgId}/subtree", produces = APPLICATION_JSON_VALUE)
+	@Operation(summary = "Organization followed by all organizations below it, depth first")
+	public ResponseEntity<List<Organization>> getSubtree(@PathVariable String orgId) {
+		return ResponseEntity.ok(index().subtree(orgId)
+			.orElseThrow(() -> notFound("No organization with org id " + orgId)));
+	}
+
+	private DirectoryIndex index() {
+		return directoryService.index()
+			.orElseThrow(() -> new ResponseStatusException(SERVICE_UNAVAILABLE, "Directory not loaded yet"));
+	}
+
+	private static ResponseStatusException notFound(String reason) {
+		return new ResponseStatusException(NOT_FOUND, reason);
+	}
+}
@@ -0,0 +1,17 @@
+package se.sundsvall.csvfilereader.api.model;
+
+/**
+ * An active employee as imported from the employee file.
+ */
+public record Employee(
+	String personId,
+	String givenName,
+	String lastName,
+	String workMobile,
+	String workPhone,
+	String title,
+	String orgId,
+	String email,
+	String managerId,
+	String managerCode) {
+}
@@ -0,0 +1,12 @@
+package se.sundsvall.csvfilereader.api.model;
+
+/**
+ * An organization as imported from the organization file.
+ */
+public record Organization(
+	Integer companyId,
+	String orgId,
+	String orgName,
+	String parentOrgId,
+	Integer treeLevel) {
+}
@@ -0,0 +1,28 @@
+package se.sundsvall.csvfilereader.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import se.sundsvall.csvfilereader.file.ChangeLogFile;
+import se.sundsvall.csvfilereader.file.ChangeLogFile.Change;
+
+/**
+ * Outbox of the published change log files. Consumers poll for ids above the last one they processed and read the
+ * named file from the outbox directory.
+ */
+@Repository
+public class ChangeLogRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ChangeLogRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public void save(String jobName, ChangeLogFile file) {
+		jdbcTemplate.update("""
+			INSERT INTO change_log (job_name, file_name, inserted, updated, deactivated, deleted)
+			VALUES (?, ?, ?, ?, ?, ?)
+			""", jobName, file.path().getFileName().toString(), file.count(Change.INSERTED), file.count(Change.UPDATED),
+			file.count(Change.DEACTIVATED), file.count(Change.DELETED));
+	}
+}
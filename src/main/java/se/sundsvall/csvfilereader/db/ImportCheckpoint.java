@@ -0,0 +1,10 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.sql.Timestamp;
+
+/**
+ * Progress of an unfinished import run. committedRows is the number of leading data rows of the file that are known
+ * to be written, startedAt is when the run that first started on the file began.
+ */
+public record ImportCheckpoint(String fileChecksum, long committedRows, Timestamp startedAt) {
+}
@@ -0,0 +1,58 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Checkpoints of import runs that have not completed yet, one per job.
+ */
+@Repository
+public class ImportCheckpointRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ImportCheckpointRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public Optional<ImportCheckpoint> findByJobName(String jobName) {
+		return jdbcTemplate.query("""
+			SELECT file_checksum, committed_rows, started_at
+			FROM import_checkpoint
+			WHERE job_name = ?
+			""", (rs, rowNum) -> new ImportCheckpoint(
+			rs.getString("file_checksum"),
+			rs.getLong("committed_rows"),
+			rs.getTimestamp("started_at")), jobName)
+			.stream()
+			.findFirst();
+	}
+
+	public void start(String jobName, String fileChecksum, Timestamp startedAt) {
+		jdbcTemplate.update("""
+			INSERT INTO import_checkpoint (job_name, file_checksum, committed_rows, started_at)
+			VALUES (?, ?, 0, ?)
+			ON DUPLICATE KEY UPDATE
+			  file_checksum = VALUES(file_checksum),
+			  committed_rows = 0,
+			  started_at = VALUES(started_at)
+			""", jobName, fileChecksum, startedAt);
+	}
+
+	/**
+	 * Moves the checkpoint forward. Writers may report out of order, the checkpoint never moves back.
+	 */
+	public void advance(String jobName, long committedRows) {
+		jdbcTemplate.update("""
+			UPDATE import_checkpoint
+			SET committed_rows = GREATEST(committed_rows, ?)
+			WHERE job_name = ?
+			""", committedRows, jobName);
+	}
+
+	public void delete(String jobName) {
+		jdbcTemplate.update("DELETE FROM import_checkpoint WHERE job_name = ?", jobName);
+	}
+}
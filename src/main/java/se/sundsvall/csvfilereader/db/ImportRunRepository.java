@@ -0,0 +1,81 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Objects;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Registry of import runs with their row counts and durations, and the person ids seen by each run.
+ */
+@Repository
+public class ImportRunRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ImportRunRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Registers a new run and returns its id. Runs of the job still marked as running were interrupted, the scheduler
+	 * lock never lets two runs of a job overlap.
+	 */
+	public long start(String jobName) {
+		jdbcTemplate.update("UPDATE import_run SET status = 'ABANDONED' WHERE job_name = ? AND status = 'RUNNING'", jobName);
+
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbcTemplate.update(connection -> {
+			PreparedStatement statement = connection.prepareStatement("INSERT INTO import_run (job_name, status) VALUES (?, 'RUNNING')", new String[] {
+				"id"
+			});
+			statement.setString(1, jobName);
+			return statement;
+		}, keyHolder);
+
+		return Objects.requireNonNull(keyHolder.getKey(), "No id generated for import run").longValue();
+	}
+
+	public void succeeded(long runId, long rowsRead, long rowsWritten, long rowsDeactivated) {
+		jdbcTemplate.update("""
+			UPDATE import_run
+			SET status = 'SUCCEEDED',
+			    finished_at = CURRENT_TIMESTAMP(3),
+			    duration_ms = TIMESTAMPDIFF(MICROSECOND, started_at, CURRENT_TIMESTAMP(3)) DIV 1000,
+			    rows_read = ?,
+			    rows_written = ?,
+			    rows_deactivated = ?
+			WHERE id = ?
+			""", rowsRead, rowsWritten, rowsDeactivated, runId);
+	}
+
+	public void failed(long runId) {
+		jdbcTemplate.update("""
+			UPDATE import_run
+			SET status = 'FAILED',
+			    finished_at = CURRENT_TIMESTAMP(3),
+			    duration_ms = TIMESTAMPDIFF(MICROSECOND, started_at, CURRENT_TIMESTAMP(3)) DIV 1000
+			WHERE id = ?
+			""", runId);
+	}
+
+	public void saveSeenKeys(long runId, List<String> personIds) {
+		List<Object[]> keys = personIds.stream()
+			.map(personId -> new Object[] {
+				runId, personId
+			})
+			.toList();
+
+		jdbcTemplate.batchUpdate("INSERT IGNORE INTO import_run_seen_key (run_id, person_id) VALUES (?, ?)", keys);
+	}
+
+	/**
+	 * Removes the seen keys of the run and of any earlier, interrupted, runs.
+	 */
+	public void deleteSeenKeys(long runId) {
+		jdbcTemplate.update("DELETE FROM import_run_seen_key WHERE run_id <= ?", runId);
+	}
+}
@@ -0,0 +1,14 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.sql.Timestamp;
+
+/**
+ * The ShedLock row of a job, together with the database time it was read at. The lock is held while lockUntil is
+ * after now.
+ */
+public record JobLock(Timestamp lockedAt, Timestamp lockUntil, Timestamp now) {
+
+	public boolean held() {
+		return lockUntil.after(now);
+	}
+}
@@ -0,0 +1,31 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reads the ShedLock table, so that a job can tell whether another job is running on any instance.
+ */
+@Repository
+public class JobLockRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public JobLockRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public Optional<JobLock> findByJobName(String jobName) {
+		return jdbcTemplate.query("""
+			SELECT locked_at, lock_until, CURRENT_TIMESTAMP(3) AS now
+			FROM shedlock
+			WHERE name = ?
+			""", (rs, rowNum) -> new JobLock(
+			rs.getTimestamp("locked_at"),
+			rs.getTimestamp("lock_until"),
+			rs.getTimestamp("now")), jobName)
+			.stream()
+			.findFirst();
+	}
+}
@@ -0,0 +1,45 @@
+package se.sundsvall.csvfilereader.db;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
+
+/**
+ * Keeps track of the last successfully imported file per job.
+ */
+@Repository
+public class ProcessedFileRepository {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ProcessedFileRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public Optional<FileFingerprint> findByJobName(String jobName) {
+		return jdbcTemplate.query("""
+			SELECT file_size, last_modified, checksum
+			FROM processed_file
+			WHERE job_name = ?
+			""", (rs, rowNum) -> new FileFingerprint(
+			rs.getLong("file_size"),
+			rs.getTimestamp("last_modified").toInstant(),
+			rs.getString("checksum")), jobName)
+			.stream()
+			.findFirst();
+	}
+
+	public void save(String jobName, FileFingerprint fingerprint) {
+		jdbcTemplate.update("""
+			INSERT INTO processed_file (job_name, file_size, last_modified, checksum)
+			VALUES (?, ?, ?, ?)
+			ON DUPLICATE KEY UPDATE
+			  file_size = VALUES(file_size),
+			  last_modified = VALUES(last_modified),
+			  checksum = VALUES(checksum),
+			  processed_at = CURRENT_TIMESTAMP(3)
+			""", jobName, fingerprint.size(), Timestamp.from(fingerprint.lastModified()), fingerprint.checksum());
+	}
+}
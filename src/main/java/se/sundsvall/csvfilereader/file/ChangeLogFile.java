@@ -0,0 +1,130 @@
+package se.sundsvall.csvfilereader.file;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The changes of one import run as JSON Lines, one {"entity", "id", "change"} object per line. Lines are streamed to a
+ * hidden temporary file which is renamed to {@code <job>-<yyyyMMdd-HHmmss>.jsonl} on {@link #commit()}, so a consumer
+ * of the outbox directory only ever sees complete files. Closing without a commit, after a failure, deletes it. A run
+ * finishing within the same second as the one before gets a counter after the time instead of replacing its file.
+ * Nothing is created for a run without changes.
+ */
+public class ChangeLogFile implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeLogFile.class);
+
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	private static final JsonFactory JSON = new JsonFactory();
+
+	/**
+	 * What happened to a row between the start and the end of the run.
+	 */
+	public enum Change {
+
+		/** New, or an employee that was inactive before */
+		INSERTED,
+
+		/** Present before and after, with other values */
+		UPDATED,
+
+		/** An active employee that was set to inactive */
+		DEACTIVATED,
+
+		/** A row that is no longer in the table */
+		DELETED
+	}
+
+	private final Path outboxDir;
+	private final String name;
+	private final Path temporary;
+	private Path path;
+	private final Map<Change, Integer> counts = new EnumMap<>(Change.class);
+	private JsonGenerator generator;
+	private boolean committed;
+
+	public ChangeLogFile(Path outboxDir, String job) {
+		this.outboxDir = outboxDir;
+		this.name = job + "-" + TIMESTAMP.format(LocalDateTime.now());
+		this.path = outboxDir.resolve(name + ".jsonl");
+		this.temporary = outboxDir.resolve("." + name + ".jsonl.tmp");
+	}
+
+	public void write(String entity, String id, Change change) {
+		try {
+			if (generator == null) {
+				Files.createDirectories(outboxDir);
+				generator = JSON.createGenerator(Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+					.setRootValueSeparator(new SerializedString("\n"));
+			}
+
+			generator.writeStartObject();
+			generator.writeStringField("entity", entity);
+			generator.writeStringField("id", id);
+			generator.writeStringField("change", change.name());
+			generator.writeEndObject();
+			counts.merge(change, 1, Integer::sum);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write change to " + temporary, e);
+		}
+	}
+
+	public int count(Change change) {
+		return counts.getOrDefault(change, 0);
+	}
+
+	/**
+	 * True once a change has been written, the file exists after commit.
+	 */
+	public boolean hasChanges() {
+		return generator != null;
+	}
+
+	/**
+	 * The file the changes are written to, final once committed.
+	 */
+	public Path path() {
+		return path;
+	}
+
+	/**
+	 * Completes the file and moves it into the outbox, once all changes are written.
+	 */
+	public void commit() throws IOException {
+		if (generator == null) {
+			return;
+		}
+		generator.writeRaw('\n');
+		generator.close();
+		path = FileManager.freeGeneration(outboxDir, name, ".jsonl");
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+		committed = true;
+		log.info("Changes {} written to {}", counts, path);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (committed || generator == null) {
+			return;
+		}
+		try {
+			generator.close();
+		} finally {
+			Files.deleteIfExists(temporary);
+			log.warn("Incomplete changes {} in {} discarded", counts, temporary);
+		}
+	}
+}
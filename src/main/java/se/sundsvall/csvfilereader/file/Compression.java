@@ -0,0 +1,139 @@
+package se.sundsvall.csvfilereader.file;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.OptionalLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of an export or a processed file. It is detected from the magic bytes the file starts with, so a
+ * compressed export is read the same way whatever it is named. The extension only matters when looking for the file.
+ */
+public enum Compression {
+
+	/** Plain text */
+	NONE(""),
+
+	/** gzip, starts with 1F 8B */
+	GZIP(".gz"),
+
+	/** Zstandard, starts with 28 B5 2F FD */
+	ZSTD(".zst");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String extension;
+
+	Compression(String extension) {
+		this.extension = extension;
+	}
+
+	public String extension() {
+		return extension;
+	}
+
+	public static Compression of(Path file) throws IOException {
+		byte[] magic = new byte[4];
+		int length;
+		try (InputStream in = Files.newInputStream(file)) {
+			length = in.readNBytes(magic, 0, magic.length);
+		}
+
+		if (length >= 2 && magic[0] == (byte) 0x1F && magic[1] == (byte) 0x8B) {
+			return GZIP;
+		}
+		if (length == 4 && magic[0] == (byte) 0x28 && magic[1] == (byte) 0xB5 && magic[2] == (byte) 0x2F && magic[3] == (byte) 0xFD) {
+			return ZSTD;
+		}
+		return NONE;
+	}
+
+	/**
+	 * The file in the directory with the given name, or compressed with the name plus .gz or .zst when only such a
+	 * file exists.
+	 */
+	public static Path find(Path dir, String fileName) {
+		Path plain = dir.resolve(fileName);
+		for (Compression compression : values()) {
+			Path candidate = dir.resolve(fileName + compression.extension);
+			if (Files.exists(candidate)) {
+				return candidate;
+			}
+		}
+		return plain;
+	}
+
+	/**
+	 * The file name without the extension of a compression, e.g. OrgExport.csv for OrgExport.csv.gz.
+	 */
+	public static String baseName(String fileName) {
+		for (Compression compression : values()) {
+			if (compression != NONE && fileName.endsWith(compression.extension)) {
+				return fileName.substring(0, fileName.length() - compression.extension.length());
+			}
+		}
+		return fileName;
+	}
+
+	/**
+	 * Opens the file for streaming its uncompressed content, nothing is inflated to disk.
+	 */
+	public static InputStream open(Path file) throws IOException {
+		Compression compression = of(file);
+		InputStream in = Files.newInputStream(file);
+		try {
+			return switch (compression) {
+				case NONE -> in;
+				case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+				case ZSTD -> new ZstdInputStream(in);
+			};
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Size of the uncompressed content when the file tells it without being read: always for plain files and from the
+	 * trailer of a gzip file below 4 GB, never for Zstandard streams.
+	 */
+	public static OptionalLong uncompressedSize(Path file) throws IOException {
+		return switch (of(file)) {
+			case NONE -> OptionalLong.of(Files.size(file));
+			case GZIP -> gzipSize(file);
+			case ZSTD -> OptionalLong.empty();
+		};
+	}
+
+	public OutputStream compress(OutputStream out) throws IOException {
+		return switch (this) {
+			case NONE -> out;
+			case GZIP -> new GZIPOutputStream(out, BUFFER_SIZE);
+			case ZSTD -> new ZstdOutputStream(out);
+		};
+	}
+
+	private static OptionalLong gzipSize(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 18 || size >= 0xFFFF_FFFFL) {
+				return OptionalLong.empty();
+			}
+			// The trailer ends with the uncompressed size modulo 2^32, little endian
+			ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(trailer, size - 4);
+			long uncompressed = Integer.toUnsignedLong(trailer.getInt(0));
+			return uncompressed >= size ? OptionalLong.of(uncompressed) : OptionalLong.empty();
+		}
+	}
+}
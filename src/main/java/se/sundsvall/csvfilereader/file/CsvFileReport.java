@@ -0,0 +1,20 @@
+package se.sundsvall.csvfilereader.file;
+
+import java.util.List;
+
+/**
+ * What the pre-flight check of an import file found in its header and first rows.
+ *
+ * @param size             file size in bytes
+ * @param byteOrderMark    whether the file starts with a UTF-8 byte order mark
+ * @param separator        column separator found in the header
+ * @param header           header column names
+ * @param sampledRows      number of data rows that were checked
+ * @param rejectedRows     number of sampled rows with more fields than the header, which the import rejects
+ * @param firstRejectedRow the first of those, counted from 1 as sampledRows, 0 when there is none
+ * @param estimatedRows    number of data rows, exact when the whole file fit in the sample and estimated from the
+ *                         average row length otherwise, -1 when the uncompressed size of a compressed file is unknown
+ */
+public record CsvFileReport(long size, boolean byteOrderMark, char separator, List<String> header, int sampledRows, int rejectedRows,
+	int firstRejectedRow, long estimatedRows) {
+}
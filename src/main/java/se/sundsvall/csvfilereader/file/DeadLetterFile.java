@@ -0,0 +1,96 @@
+package se.sundsvall.csvfilereader.file;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rows that could not be imported, written as CSV together with their line in the source file and the cause. The
+ * file is named after the source file and the time of the run, and is only created once the first row is written.
+ * Rows may be written from several threads.
+ */
+public class DeadLetterFile implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(DeadLetterFile.class);
+
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private final Path path;
+	private final char separator;
+	private final String[] columns;
+	private BufferedWriter writer;
+	private int rows;
+
+	public DeadLetterFile(Path failedDir, String sourceFileName, char separator, String... columns) {
+		int extension = sourceFileName.lastIndexOf('.');
+		String baseName = extension > 0 ? sourceFileName.substring(0, extension) : sourceFileName;
+
+		this.path = failedDir.resolve(baseName + "-rejected-" + TIMESTAMP.format(LocalDateTime.now()) + ".csv");
+		this.separator = separator;
+		this.columns = columns;
+	}
+
+	/**
+	 * Writes a rejected row. Values beyond the columns of the file are left out, an unreadable row has no values.
+	 */
+	public synchronized void write(long line, String cause, Object... values) {
+		try {
+			if (writer == null) {
+				Files.createDirectories(path.getParent());
+				writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+				writeRecord("line", "cause", columns);
+			}
+
+			String[] fields = new String[columns.length];
+			for (int i = 0; i < fields.length && i < values.length; i++) {
+				fields[i] = values[i] == null ? null : String.valueOf(values[i]);
+			}
+			writeRecord(String.valueOf(line), cause, fields);
+			rows++;
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to write rejected row to " + path, e);
+		}
+	}
+
+	public synchronized int rows() {
+		return rows;
+	}
+
+	public Path path() {
+		return path;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			log.warn("{} rejected rows written to {}", rows, path);
+		}
+	}
+
+	private void writeRecord(String line, String cause, String[] fields) throws IOException {
+		StringBuilder record = new StringBuilder(line).append(separator).append(quote(cause));
+		for (String field : fields) {
+			record.append(separator).append(quote(field));
+		}
+		writer.write(record.toString());
+		writer.newLine();
+	}
+
+	private String quote(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(separator) < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
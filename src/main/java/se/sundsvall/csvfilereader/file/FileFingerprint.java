@@ -0,0 +1,71 @@
+package se.sundsvall.csvfilereader.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+/**
+ * Size, modification time and SHA-256 checksum of an import file.
+ */
+public record FileFingerprint(long size, Instant lastModified, String checksum) {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public static FileFingerprint of(Path file) {
+		try {
+			return new FileFingerprint(Files.size(file), lastModifiedOf(file), checksum(file));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to fingerprint file: " + file.toAbsolutePath(), e);
+		}
+	}
+
+	public static String checksum(Path file) throws IOException {
+		MessageDigest digest = sha256();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	 * Checks if the file has the same content as this fingerprint. Size and modification time are compared first, the
+	 * file is only read when the size is equal but the modification time differs.
+	 */
+	public boolean matches(Path file) {
+		try {
+			if (Files.size(file) != size) {
+				return false;
+			}
+			if (lastModifiedOf(file).equals(lastModified)) {
+				return true;
+			}
+			return checksum(file).equals(checksum);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to fingerprint file: " + file.toAbsolutePath(), e);
+		}
+	}
+
+	private static Instant lastModifiedOf(Path file) throws IOException {
+		// Stored with millisecond precision in the database
+		return Files.getLastModifiedTime(file).toInstant().truncatedTo(ChronoUnit.MILLIS);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+}
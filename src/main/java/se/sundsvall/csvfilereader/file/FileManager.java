@@ -1,12 +1,33 @@
 package se.sundsvall.csvfilereader.file;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -14,32 +35,206 @@ public class FileManager {
 
 	private static final Logger log = LoggerFactory.getLogger(FileManager.class);
 
-	public void moveFile(Path targetFile, Path targetDir) {
+	private static final int SAMPLE_BYTES = 64 * 1024;
+	private static final DateTimeFormatter GENERATION = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+	private static final int MAX_GENERATIONS_PER_SECOND = 99;
+	private static final char[] SEPARATORS = {
+		',', ';', '\t', '|'
+	};
+
+	@Value("${import.max-rejected-rows}")
+	private int maxRejectedRows;
+
+	/**
+	 * Places the source file in the target directory for import and returns it. With {@link StagingMode#LINK} a hard
+	 * link is tried first, otherwise or across file systems the file is copied with {@link FileChannel#transferTo},
+	 * which lets the kernel copy without passing the bytes through the JVM, and given the modification time of the
+	 * source unless it changed while copying. Either way the file only appears under its name once complete, through an
+	 * atomic rename.
+	 */
+	public Path stage(Path sourceFile, Path targetDir, StagingMode mode) {
+		Path target = targetDir.resolve(sourceFile.getFileName());
+		Path temporary = targetDir.resolve("." + sourceFile.getFileName() + ".tmp");
 		try {
 			Files.createDirectories(targetDir);
+			Files.deleteIfExists(temporary);
+
+			if (mode == StagingMode.LINK && link(sourceFile, temporary)) {
+				log.info("Linked '{}' to '{}'", sourceFile, target);
+			} else {
+				FileTime lastModified = Files.getLastModifiedTime(sourceFile);
+				long bytes = transfer(sourceFile, temporary);
+				// Keeps the size and modification time check of the next run from hashing an unchanged source
+				if (lastModified.equals(Files.getLastModifiedTime(sourceFile))) {
+					Files.setLastModifiedTime(temporary, lastModified);
+				}
+				log.info("Copied '{}' to '{}', {} bytes", sourceFile, target, bytes);
+			}
+			rename(temporary, target);
+			return target;
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to stage " + sourceFile + " in " + targetDir, e);
+		}
+	}
+
+	/**
+	 * Moves an imported file to the processed directory as a new generation named after the time it was archived, and
+	 * removes the oldest generations of the same file beyond the given count or total size. The newest generation is
+	 * always kept. A plain file is stored with the given compression, a compressed file is moved as it is. A second
+	 * generation archived within the same second gets a counter after the time rather than replacing the first.
+	 */
+	public Path archive(Path importedFile, Path processedDir, int generations, long maxBytes, Compression compression) {
+		String fileName = Compression.baseName(importedFile.getFileName().toString());
+		int extension = fileName.lastIndexOf('.');
+		String baseName = extension > 0 ? fileName.substring(0, extension) : fileName;
+		String suffix = extension > 0 ? fileName.substring(extension) : "";
+
+		try {
+			Files.createDirectories(processedDir);
+			String generation = baseName + "-" + GENERATION.format(LocalDateTime.now());
+			Compression current = Compression.of(importedFile);
 
-			Files.move(
-				targetFile,
-				targetDir.resolve(targetFile.getFileName()),
-				StandardCopyOption.REPLACE_EXISTING);
+			Path archived;
+			if (current == Compression.NONE && compression != Compression.NONE) {
+				archived = freeGeneration(processedDir, generation, suffix + compression.extension());
+				compress(importedFile, archived, compression);
+				Files.delete(importedFile);
+				log.info("Compressed file '{}' to '{}' after reading", importedFile, archived);
+			} else {
+				archived = freeGeneration(processedDir, generation, suffix + current.extension());
+				rename(importedFile, archived);
+				log.info("Moved file '{}' to '{}' after reading", importedFile, archived);
+			}
 
-			log.info("Moved file '{}' to '{}' after reading", targetFile, targetDir);
+			removeOldGenerations(processedDir, fileName,
+				Pattern.compile(Pattern.quote(baseName) + "-\\d{8}-\\d{6}(_\\d{2})?" + Pattern.quote(suffix) + "(\\.gz|\\.zst)?"), generations, maxBytes);
+			return archived;
 		} catch (IOException e) {
 			throw new IllegalStateException("Failed to move processed files", e);
 		}
 	}
 
-	public void deletePreviouslyProcessedFile(Path processedFile) {
+	/**
+	 * The path of a new generation named name followed by extension. When a file of that name exists, from another run
+	 * within the same second, a counter is added to the name. It sorts after the name without it, so the newest
+	 * generation stays the last by name. The jobs are locked, so no other run picks the same name meanwhile.
+	 */
+	static Path freeGeneration(Path dir, String name, String extension) throws IOException {
+		Path path = dir.resolve(name + extension);
+		for (int counter = 1; Files.exists(path, LinkOption.NOFOLLOW_LINKS); counter++) {
+			if (counter > MAX_GENERATIONS_PER_SECOND) {
+				throw new FileAlreadyExistsException(path.toString(), null, "No free generation name left");
+			}
+			path = dir.resolve(name + "_%02d".formatted(counter) + extension);
+		}
+		return path;
+	}
+
+	private void removeOldGenerations(Path processedDir, String fileName, Pattern generation, int generations, long maxBytes) throws IOException {
+		List<Path> files;
+		try (Stream<Path> listing = Files.list(processedDir)) {
+			// The timestamp sorts the generations by name, newest first. A file from before generations is the oldest
+			files = listing
+				.filter(file -> generation.matcher(file.getFileName().toString()).matches() || file.getFileName().toString().equals(fileName))
+				.sorted(Comparator.comparing((Path file) -> file.getFileName().toString().equals(fileName))
+					.thenComparing(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed()))
+				.toList();
+		}
+
+		long bytes = 0;
+		for (int i = 0; i < files.size(); i++) {
+			Path file = files.get(i);
+			bytes += Files.size(file);
+			if (i > 0 && (i >= generations || bytes > maxBytes)) {
+				Files.delete(file);
+				log.info("Deleted processed generation '{}'", file);
+			}
+		}
+	}
+
+	private static boolean link(Path sourceFile, Path link) {
 		try {
-			if (Files.deleteIfExists(processedFile)) {
-				log.info("Old file deleted");
+			Files.createLink(link, sourceFile);
+			return true;
+		} catch (UnsupportedOperationException | IOException e) {
+			log.info("Hard link to '{}' not possible ({}), copying", sourceFile, e.getMessage());
+			return false;
+		}
+	}
+
+	private static long transfer(Path sourceFile, Path targetFile) throws IOException {
+		try (FileChannel source = FileChannel.open(sourceFile, StandardOpenOption.READ);
+			FileChannel target = FileChannel.open(targetFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = source.size();
+			long position = 0;
+			while (position < size) {
+				position += source.transferTo(position, size - position, target);
 			}
-		} catch (IOException e) {
-			throw new IllegalStateException("Failed to delete file");
+			return position;
+		}
+	}
+
+	private static void compress(Path file, Path target, Compression compression) throws IOException {
+		Path temporary = target.resolveSibling("." + target.getFileName() + ".tmp");
+		try (OutputStream out = compression.compress(Files.newOutputStream(temporary))) {
+			Files.copy(file, out);
+		}
+		rename(temporary, target);
+	}
+
+	private static void rename(Path file, Path target) throws IOException {
+		try {
+			Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 
+	/**
+	 * Checks that the file exists and has a readable header, without reading more than its first
+	 * {@value #SAMPLE_BYTES} bytes.
+	 */
 	public void verifyReadable(Path path, String label) {
+		CsvFileReport report = inspect(path, label);
+
+		log.info("[{}] OK. Size={} bytes. Header: {}", label, report.size(), report.header());
+	}
+
+	/**
+	 * Pre-flight check of an export before anything is written to the database. Reads only the header and the rows in
+	 * the first {@value #SAMPLE_BYTES} bytes, and fails when the file is not UTF-8, uses another separator, lacks one
+	 * of the expected columns or has more sampled rows with too many fields than max-rejected-rows. Such rows are
+	 * rejected by the import one by one, a sample with more of them would fail the import anyway.
+	 */
+	public CsvFileReport verifyCsv(Path path, String label, char separator, String... expectedColumns) {
+		CsvFileReport report = inspect(path, label);
+
+		if (report.separator() != separator) {
+			throw new IllegalStateException("Unexpected separator '" + report.separator() + "', expected '" + separator + "': " + path.toAbsolutePath());
+		}
+
+		List<String> missing = Arrays.stream(expectedColumns)
+			.filter(column -> !report.header().contains(column))
+			.toList();
+		if (!missing.isEmpty()) {
+			throw new IllegalStateException("Missing columns " + missing + ": " + path.toAbsolutePath());
+		}
+
+		if (report.rejectedRows() > maxRejectedRows) {
+			throw new IllegalStateException("Row " + report.firstRejectedRow() + " has more fields than the header's " + report.header().size()
+				+ ", " + report.rejectedRows() + " of " + report.sampledRows() + " sampled rows have too many: " + path.toAbsolutePath());
+		}
+		if (report.rejectedRows() > 0) {
+			log.warn("[{}] {} of {} sampled rows have more fields than the header, the first is row {}",
+				label, report.rejectedRows(), report.sampledRows(), report.firstRejectedRow());
+		}
+
+		log.info("[{}] OK. Size={} bytes. Byte order mark={}. Separator='{}'. Columns={}. Rows checked={}, estimated rows={}",
+			label, report.size(), report.byteOrderMark(), report.separator(), report.header().size(), report.sampledRows(), report.estimatedRows());
+		return report;
+	}
+
+	private CsvFileReport inspect(Path path, String label) {
 		log.info("[{}] Checking file: {}", label, path.toAbsolutePath());
 
 		if (!Files.exists(path)) {
@@ -50,16 +245,147 @@ public class FileManager {
 			throw new IllegalStateException("File not readable: " + path.toAbsolutePath());
 		}
 
+		long size;
+		OptionalLong contentSize;
+		byte[] sample;
+		boolean wholeFile;
+		// A compressed file is checked on its uncompressed content
+		try (InputStream in = Compression.open(path)) {
+			size = Files.size(path);
+			contentSize = Compression.uncompressedSize(path);
+			sample = in.readNBytes(SAMPLE_BYTES);
+			wholeFile = in.read() < 0;
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed reading file: " + path.toAbsolutePath(), e);
+		}
+
+		if (sample.length == 0) {
+			throw new IllegalStateException("File is empty: " + path.toAbsolutePath());
+		}
+		if (sample.length >= 2 && (sample[0] == (byte) 0xFE && sample[1] == (byte) 0xFF || sample[0] == (byte) 0xFF && sample[1] == (byte) 0xFE)) {
+			throw new IllegalStateException("File is UTF-16 encoded, expected UTF-8: " + path.toAbsolutePath());
+		}
+
+		boolean byteOrderMark = sample.length >= 3 && sample[0] == (byte) 0xEF && sample[1] == (byte) 0xBB && sample[2] == (byte) 0xBF;
+		int start = byteOrderMark ? 3 : 0;
+
+		// Only complete lines are checked, the sample may end in the middle of a row or even a character
+		int end = sample.length;
+		if (!wholeFile) {
+			while (end > start && sample[end - 1] != '\n') {
+				end--;
+			}
+			if (end == start) {
+				throw new IllegalStateException("No line break within the first " + SAMPLE_BYTES + " bytes: " + path.toAbsolutePath());
+			}
+		}
+
+		String text;
 		try {
-			long size = Files.size(path);
-			String firstLine = Files.readAllLines(path, StandardCharsets.UTF_8).stream()
-				.findFirst()
-				.orElse("");
+			text = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT)
+				.decode(ByteBuffer.wrap(sample, start, end - start))
+				.toString();
+		} catch (CharacterCodingException e) {
+			throw new IllegalStateException("File is not UTF-8 encoded: " + path.toAbsolutePath(), e);
+		}
 
-			log.info("[{}] OK. Size={} bytes. First line: {}", label, size, firstLine);
+		int headerEnd = text.indexOf('\n');
+		String headerLine = (headerEnd < 0 ? text : text.substring(0, headerEnd)).strip();
+		char separator = detectSeparator(headerLine);
+		List<String> header = fields(headerLine, separator);
 
-		} catch (IOException e) {
-			throw new IllegalStateException("Failed reading file: " + path.toAbsolutePath(), e);
+		int sampledRows = 0;
+		int rejectedRows = 0;
+		int firstRejectedRow = 0;
+		int rowStart = headerEnd < 0 ? text.length() : headerEnd + 1;
+		for (String row : rows(text.substring(rowStart), wholeFile)) {
+			sampledRows++;
+			// Like the readers, which take fewer fields as nulls and allow one empty trailing field
+			List<String> fields = fields(row, separator);
+			if (fields.size() > header.size() && !(fields.size() == header.size() + 1 && fields.getLast().isEmpty())) {
+				rejectedRows++;
+				firstRejectedRow = firstRejectedRow == 0 ? sampledRows : firstRejectedRow;
+			}
+		}
+
+		long headerBytes = start + text.substring(0, rowStart).getBytes(StandardCharsets.UTF_8).length;
+		long sampledBytes = end - headerBytes;
+		long estimatedRows;
+		if (wholeFile || sampledBytes <= 0) {
+			estimatedRows = sampledRows;
+		} else {
+			estimatedRows = contentSize.isPresent() ? (contentSize.getAsLong() - headerBytes) * sampledRows / sampledBytes : -1;
+		}
+
+		return new CsvFileReport(size, byteOrderMark, separator, header, sampledRows, rejectedRows, firstRejectedRow, estimatedRows);
+	}
+
+	/**
+	 * The candidate separator occurring most often outside quotes in the header line.
+	 */
+	private static char detectSeparator(String headerLine) {
+		char detected = SEPARATORS[0];
+		int best = 0;
+		for (char candidate : SEPARATORS) {
+			int count = fields(headerLine, candidate).size() - 1;
+			if (count > best) {
+				best = count;
+				detected = candidate;
+			}
+		}
+		return detected;
+	}
+
+	/**
+	 * Splits sampled text into rows, keeping line breaks inside quoted values and skipping blank lines. The sample of a
+	 * larger file may be cut inside a quoted value spanning lines, such an incomplete last row is left out.
+	 */
+	private static List<String> rows(String text, boolean wholeFile) {
+		List<String> rows = new ArrayList<>();
+		boolean quoted = false;
+		int rowStart = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '\n' && !quoted) {
+				addRow(rows, text.substring(rowStart, i));
+				rowStart = i + 1;
+			}
+		}
+		if (!quoted || wholeFile) {
+			addRow(rows, text.substring(rowStart));
+		}
+		return rows;
+	}
+
+	private static void addRow(List<String> rows, String row) {
+		if (!row.isBlank()) {
+			rows.add(row.strip());
+		}
+	}
+
+	/**
+	 * Splits a row on the separator outside quotes, unquoting and trimming the values.
+	 */
+	private static List<String> fields(String row, char separator) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < row.length(); i++) {
+			char c = row.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == separator && !quoted) {
+				fields.add(field.toString().strip());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
 		}
+		fields.add(field.toString().strip());
+		return fields;
 	}
 }
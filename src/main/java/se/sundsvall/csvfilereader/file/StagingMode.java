@@ -0,0 +1,16 @@
+package se.sundsvall.csvfilereader.file;
+
+/**
+ * How a source file is placed in the incoming directory before it is imported.
+ */
+public enum StagingMode {
+
+	/** A private copy, written next to the target and renamed into place */
+	COPY,
+
+	/**
+	 * A hard link to the source, no bytes are copied. Requires the source to be replaced by a rename rather than
+	 * rewritten in place, falls back to COPY across file systems
+	 */
+	LINK
+}
@@ -0,0 +1,51 @@
+package se.sundsvall.csvfilereader.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.stereotype.Component;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+
+/**
+ * Runs the organization and the employee import concurrently. The employee import reads and parses its file right
+ * away, but resolves org ids and writes only once the organization import has finished, see
+ * {@link OrganizationImportGate}. Both jobs are called through the scheduler bean, so each still holds its own ShedLock
+ * lock. Both run on {@link ImportThreads}, virtual threads when enabled.
+ */
+@Component
+public class ImportJobGraph {
+
+	private final Scheduler scheduler;
+	private final OrganizationImportGate organizationImportGate;
+	private final ImportThreads importThreads;
+
+	public ImportJobGraph(Scheduler scheduler, OrganizationImportGate organizationImportGate, ImportThreads importThreads) {
+		this.scheduler = scheduler;
+		this.organizationImportGate = organizationImportGate;
+		this.importThreads = importThreads;
+	}
+
+	/**
+	 * Runs both imports and waits for them, the first failure is rethrown once both are done. A failed or skipped
+	 * organization import releases the employee import as well.
+	 */
+	public void runAll() {
+		organizationImportGate.expect();
+
+		try (ExecutorService executor = Executors.newFixedThreadPool(2, importThreads.threadFactory("import-graph-"))) {
+			CompletableFuture<Void> organizations = CompletableFuture.runAsync(scheduler::importOrganizationsJob, executor)
+				.whenComplete((result, failure) -> organizationImportGate.release());
+			CompletableFuture<Void> employees = CompletableFuture.runAsync(scheduler::importEmployeesJob, executor);
+
+			CompletableFuture.allOf(organizations, employees).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		} finally {
+			organizationImportGate.release();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package se.sundsvall.csvfilereader.scheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import se.sundsvall.csvfilereader.db.JobLock;
+import se.sundsvall.csvfilereader.db.JobLockRepository;
+
+/**
+ * Lets the employee import wait for the organization import before it resolves org ids, so that employees are never
+ * remapped to UNKNOWN against organizations that are about to be imported.
+ * <p>
+ * The employee import waits for an organization run that is
+ * <ul>
+ * <li>expected in this instance, i.e. started together with it by {@link ImportJobGraph}</li>
+ * <li>running on any instance, i.e. holding its ShedLock lock</li>
+ * <li>due on the same cron tick but not yet started, since both cron jobs fire independently, as long as the scheduler
+ * has a free thread to start it</li>
+ * </ul>
+ * and continues without it once the wait has reached organization-wait.
+ */
+@Component
+public class OrganizationImportGate {
+
+	private static final Logger log = LoggerFactory.getLogger(OrganizationImportGate.class);
+
+	// A run due longer ago than this is not waited for unless it holds its lock
+	private static final Duration DUE_GRACE = Duration.ofMinutes(1);
+	// Tolerated difference between the application and the database clock
+	private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+
+	@Value("${scheduler.scheduled-org-import.name}")
+	private String orgJobName;
+
+	@Value("${scheduler.scheduled-org-import.cron}")
+	private String orgCron;
+
+	@Value("${scheduler.scheduled-emp-import.organization-wait}")
+	private Duration organizationWait;
+
+	private Duration pollInterval = Duration.ofSeconds(1);
+
+	private final JobLockRepository jobLockRepository;
+	private final ObjectProvider<TaskScheduler> taskScheduler;
+	private volatile CompletableFuture<Void> expected = CompletableFuture.completedFuture(null);
+
+	public OrganizationImportGate(JobLockRepository jobLockRepository, ObjectProvider<TaskScheduler> taskScheduler) {
+		this.jobLockRepository = jobLockRepository;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Announces an organization run in this instance, the gate stays closed until {@link #release()}.
+	 */
+	public void expect() {
+		expected = new CompletableFuture<>();
+	}
+
+	public void release() {
+		expected.complete(null);
+	}
+
+	/**
+	 * Blocks until no organization run is expected, running or due, or until organization-wait has passed.
+	 */
+	public void await() {
+		long deadline = System.nanoTime() + organizationWait.toNanos();
+		try {
+			expected.get(organizationWait.toNanos(), TimeUnit.NANOSECONDS);
+
+			Instant due = dueTick();
+			if (due != Instant.MAX && !schedulerCanStartOrganizationRun()) {
+				log.info("[EMP] the organization import due at {} cannot start before this job returns, not waiting for it", due);
+				due = Instant.MAX;
+			}
+			while (pending(due)) {
+				if (System.nanoTime() >= deadline) {
+					throw new TimeoutException();
+				}
+				Thread.sleep(pollInterval.toMillis());
+			}
+		} catch (TimeoutException e) {
+			log.warn("[EMP] organization import still pending after {}, resolving org ids without it", organizationWait);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Organization gate failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the organization import", e);
+		}
+	}
+
+	private boolean pending(Instant due) {
+		Optional<JobLock> lock = jobLockRepository.findByJobName(orgJobName);
+		if (lock.isPresent() && lock.get().held()) {
+			log.info("[EMP] waiting for the running organization import");
+			return true;
+		}
+
+		boolean startedSinceDue = lock.isPresent() && !lock.get().lockedAt().toInstant().isBefore(due.minus(CLOCK_SKEW));
+		if (due != Instant.MAX && !startedSinceDue) {
+			log.info("[EMP] waiting for the organization import due at {}", due);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the scheduler can start a due organization run while the employee import waits. When all its threads are
+	 * busy, as with Spring's single scheduler thread running the employee job, the organization run only starts once
+	 * the employee job has returned, and waiting for it would stall the employee import for organization-wait.
+	 */
+	private boolean schedulerCanStartOrganizationRun() {
+		TaskScheduler scheduler = taskScheduler.getIfUnique();
+		if (scheduler instanceof SimpleAsyncTaskScheduler) {
+			return true;
+		}
+		if (scheduler instanceof ThreadPoolTaskScheduler pool) {
+			ScheduledThreadPoolExecutor executor = pool.getScheduledThreadPoolExecutor();
+			return executor.getActiveCount() < executor.getCorePoolSize();
+		}
+		// The scheduler Spring falls back to without a scheduler bean has a single thread
+		return false;
+	}
+
+	/**
+	 * The organization cron tick within the last {@link #DUE_GRACE}, or Instant.MAX when there is none.
+	 */
+	private Instant dueTick() {
+		if (!CronExpression.isValidExpression(orgCron)) {
+			return Instant.MAX;
+		}
+
+		ZonedDateTime now = ZonedDateTime.now();
+		ZonedDateTime next = CronExpression.parse(orgCron).next(now.minus(DUE_GRACE));
+		return next != null && !next.isAfter(now) ? next.toInstant() : Instant.MAX;
+	}
+}
@@ -1,13 +1,23 @@
 package se.sundsvall.csvfilereader.scheduler;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.unit.DataSize;
+import se.sundsvall.csvfilereader.db.ProcessedFileRepository;
+import se.sundsvall.csvfilereader.file.Compression;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
 import se.sundsvall.csvfilereader.file.FileManager;
+import se.sundsvall.csvfilereader.file.StagingMode;
+import se.sundsvall.csvfilereader.service.ChangeLogService;
+import se.sundsvall.csvfilereader.service.ChangeLogService.Capture;
+import se.sundsvall.csvfilereader.service.DirectoryService;
 import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+import se.sundsvall.csvfilereader.service.ImportMetrics.JobRun;
 import se.sundsvall.csvfilereader.service.OrganizationImportService;
 import se.sundsvall.dept44.scheduling.Dept44Scheduled;
 
@@ -15,6 +25,8 @@ import se.sundsvall.dept44.scheduling.Dept44Scheduled;
 @Configuration
 public class Scheduler {
 
+	private static final Logger log = LoggerFactory.getLogger(Scheduler.class);
+
 	@Value("${import.file-source-dir}")
 	private Path fileSourceDir;
 	@Value("${import.incoming-dir}")
@@ -22,20 +34,48 @@ public class Scheduler {
 	@Value("${import.processed-dir}")
 	private Path processedDir;
 
+	@Value("${import.staging}")
+	private StagingMode staging;
+	@Value("${import.processed-generations}")
+	private int processedGenerations;
+	@Value("${import.processed-max-size}")
+	private DataSize processedMaxSize;
+	@Value("${import.processed-compression}")
+	private Compression processedCompression;
+
 	@Value("${import.org-file-name}")
 	private String orgFileName;
 	@Value("${import.emp-file-name}")
 	private String empFileName;
 
+	@Value("${import.skip-unchanged-files}")
+	private boolean skipUnchangedFiles;
+
+	@Value("${scheduler.scheduled-org-import.name}")
+	private String orgJobName;
+	@Value("${scheduler.scheduled-emp-import.name}")
+	private String empJobName;
+
 	private final EmployeeImportService employeeImportService;
 	private final OrganizationImportService organizationImportService;
 	private final FileManager fileManager;
+	private final ProcessedFileRepository processedFileRepository;
+	private final ImportMetrics importMetrics;
+	private final OrganizationImportGate organizationImportGate;
+	private final DirectoryService directoryService;
+	private final ChangeLogService changeLogService;
 
 	public Scheduler(EmployeeImportService employeeImportService, OrganizationImportService organizationImportService,
-		FileManager fileManager) {
+		FileManager fileManager, ProcessedFileRepository processedFileRepository, ImportMetrics importMetrics,
+		OrganizationImportGate organizationImportGate, DirectoryService directoryService, ChangeLogService changeLogService) {
 		this.employeeImportService = employeeImportService;
 		this.organizationImportService = organizationImportService;
 		this.fileManager = fileManager;
+		this.processedFileRepository = processedFileRepository;
+		this.importMetrics = importMetrics;
+		this.organizationImportGate = organizationImportGate;
+		this.directoryService = directoryService;
+		this.changeLogService = changeLogService;
 	}
 
 	@Dept44Scheduled(
@@ -46,18 +86,38 @@ public class Scheduler {
 
 	public void importOrganizationsJob() {
 
-		Path orgCsv = incomingDir.resolve(orgFileName);
-		Path oldOrgCsv = processedDir.resolve(orgFileName);
+		Path sourceCsv = Compression.find(fileSourceDir, orgFileName);
+		JobRun run = importMetrics.startJob(ImportMetrics.ORG_IMPORT);
 		try {
 
-			Files.copy(fileSourceDir.resolve(orgFileName), orgCsv, StandardCopyOption.REPLACE_EXISTING);
-			organizationImportService.importOrganizations(orgCsv);
-			fileManager.deletePreviouslyProcessedFile(oldOrgCsv);
-			fileManager.moveFile(orgCsv, processedDir);
+			if (isUnchangedSinceLastImport(orgJobName, sourceCsv)) {
+				log.info("[ORG] {} unchanged since last import, skipping", sourceCsv);
+				run.skipped();
+				return;
+			}
+			fileManager.verifyCsv(sourceCsv, "ORG", OrganizationImportService.CSV_FORMAT.separator(), OrganizationImportService.CSV_FORMAT.columns());
+
+			Path orgCsv = importMetrics.copyTimer(ImportMetrics.ORG_IMPORT).recordCallable(() -> fileManager.stage(sourceCsv, incomingDir, staging));
+			// Of the staged file, the source may have been replaced by the exporter since it was checked
+			FileFingerprint fingerprint = skipUnchangedFiles ? FileFingerprint.of(orgCsv) : null;
+			Capture changes = changeLogService.capture(orgJobName, ChangeLogService.ORGANIZATIONS);
+			try {
+				organizationImportService.importOrganizations(orgCsv);
+			} finally {
+				publish(changes);
+			}
+			fileManager.archive(orgCsv, processedDir, processedGenerations, processedMaxSize.toBytes(), processedCompression);
+
+			if (fingerprint != null) {
+				processedFileRepository.save(orgJobName, fingerprint);
+			}
+			run.success();
 
 		} catch (Exception e) {
+			run.failure();
 			throw new RuntimeException("[ORG] Import failed", e);
 		}
+		refreshDirectory(orgJobName);
 	}
 
 	@Dept44Scheduled(
@@ -68,17 +128,61 @@ public class Scheduler {
 
 	public void importEmployeesJob() {
 
-		Path empCsv = incomingDir.resolve(empFileName);
-		Path oldEmpFile = processedDir.resolve(empFileName);
+		Path sourceCsv = Compression.find(fileSourceDir, empFileName);
+		JobRun run = importMetrics.startJob(ImportMetrics.EMP_IMPORT);
 		try {
 
-			Files.copy(fileSourceDir.resolve(empFileName), empCsv, StandardCopyOption.REPLACE_EXISTING);
-			employeeImportService.importEmployee(empCsv);
-			fileManager.deletePreviouslyProcessedFile(oldEmpFile);
-			fileManager.moveFile(empCsv, processedDir);
+			if (isUnchangedSinceLastImport(empJobName, sourceCsv)) {
+				log.info("[EMP] {} unchanged since last import, skipping", sourceCsv);
+				run.skipped();
+				return;
+			}
+			fileManager.verifyCsv(sourceCsv, "EMP", EmployeeImportService.CSV_FORMAT.separator(), EmployeeImportService.CSV_FORMAT.columns());
+
+			Path empCsv = importMetrics.copyTimer(ImportMetrics.EMP_IMPORT).recordCallable(() -> fileManager.stage(sourceCsv, incomingDir, staging));
+			// Of the staged file, the source may have been replaced by the exporter since it was checked
+			FileFingerprint fingerprint = skipUnchangedFiles ? FileFingerprint.of(empCsv) : null;
+			Capture changes = changeLogService.capture(empJobName, ChangeLogService.EMPLOYEES);
+			try {
+				employeeImportService.importEmployee(empCsv, organizationImportGate::await);
+			} finally {
+				publish(changes);
+			}
+			fileManager.archive(empCsv, processedDir, processedGenerations, processedMaxSize.toBytes(), processedCompression);
+
+			if (fingerprint != null) {
+				processedFileRepository.save(empJobName, fingerprint);
+			}
+			run.success();
 
 		} catch (Exception e) {
+			run.failure();
 			throw new RuntimeException("[EMP] Import failed", e);
 		}
+		refreshDirectory(empJobName);
+	}
+
+	private void publish(Capture changes) {
+		try {
+			changes.publish();
+		} catch (RuntimeException e) {
+			// Never hides the outcome of the import, the changes are lost for this run only
+			log.error("Failed to publish change log", e);
+		}
+	}
+
+	private void refreshDirectory(String jobName) {
+		try {
+			directoryService.refreshAfter(jobName);
+		} catch (RuntimeException e) {
+			// The import itself succeeded, the read API keeps serving the previous snapshot
+			log.warn("Failed to refresh directory index after {}", jobName, e);
+		}
+	}
+
+	private boolean isUnchangedSinceLastImport(String jobName, Path sourceCsv) {
+		return skipUnchangedFiles && processedFileRepository.findByJobName(jobName)
+			.map(previous -> previous.matches(sourceCsv))
+			.orElse(false);
 	}
 }
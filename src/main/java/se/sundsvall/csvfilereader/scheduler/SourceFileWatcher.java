@@ -0,0 +1,209 @@
+package se.sundsvall.csvfilereader.scheduler;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import se.sundsvall.csvfilereader.file.Compression;
+
+/**
+ * Starts the imports as soon as a new export has landed in the source directory, instead of at the next cron tick. A
+ * file has landed once its size and modification time have not changed for stable-period, so that a file still being
+ * written is not picked up half way.
+ * <p>
+ * The jobs are called through the scheduler bean and hold their ShedLock lock as usual, a trigger while the job runs
+ * on another instance is skipped. The cron schedule stays as a safety net for missed events. Jobs run one at a time on
+ * the watcher thread, events arriving meanwhile are picked up afterwards.
+ */
+@Component
+public class SourceFileWatcher implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(SourceFileWatcher.class);
+
+	@Value("${import.file-watch.enabled}")
+	private boolean enabled;
+	@Value("${import.file-watch.stable-period}")
+	private Duration stablePeriod;
+
+	@Value("${import.file-source-dir}")
+	private Path fileSourceDir;
+	@Value("${import.org-file-name}")
+	private String orgFileName;
+	@Value("${import.emp-file-name}")
+	private String empFileName;
+
+	private Duration pollInterval = Duration.ofSeconds(1);
+
+	private final Scheduler scheduler;
+	private final ImportJobGraph importJobGraph;
+
+	// Files with events that have not landed yet, only used by the watcher thread
+	private final Map<String, Snapshot> pending = new HashMap<>();
+	private volatile WatchService watchService;
+	private volatile Thread thread;
+
+	public SourceFileWatcher(Scheduler scheduler, ImportJobGraph importJobGraph) {
+		this.scheduler = scheduler;
+		this.importJobGraph = importJobGraph;
+	}
+
+	@Override
+	public void start() {
+		if (!enabled) {
+			return;
+		}
+
+		try {
+			watchService = fileSourceDir.getFileSystem().newWatchService();
+			fileSourceDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to watch " + fileSourceDir.toAbsolutePath(), e);
+		}
+		thread = Thread.ofPlatform().name("source-file-watcher").daemon().start(this::watch);
+		log.info("Watching {} for {} and {}", fileSourceDir.toAbsolutePath(), orgFileName, empFileName);
+	}
+
+	@Override
+	public void stop() {
+		Thread watcher = thread;
+		if (watcher == null) {
+			return;
+		}
+
+		watcher.interrupt();
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			log.warn("Failed to close watch service", e);
+		}
+		thread = null;
+	}
+
+	@Override
+	public boolean isRunning() {
+		Thread watcher = thread;
+		return watcher != null && watcher.isAlive();
+	}
+
+	private void watch() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = watchService.poll(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+				if (key != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							// Events were lost, check both files
+							track(orgFileName);
+							track(empFileName);
+						} else if (event.context() instanceof Path name) {
+							track(name.toString());
+						}
+					}
+					if (!key.reset()) {
+						log.error("{} is no longer accessible, imports are only started by cron", fileSourceDir.toAbsolutePath());
+						return;
+					}
+				}
+				runLandedFiles();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	private void track(String fileName) {
+		// A compressed export lands under the configured name plus .gz or .zst
+		String baseName = Compression.baseName(fileName);
+		if (baseName.equals(orgFileName) || baseName.equals(empFileName)) {
+			pending.putIfAbsent(fileName, null);
+		}
+	}
+
+	private void runLandedFiles() {
+		Set<String> landed = new HashSet<>();
+		long now = System.nanoTime();
+
+		for (Iterator<Map.Entry<String, Snapshot>> entries = pending.entrySet().iterator(); entries.hasNext();) {
+			Map.Entry<String, Snapshot> entry = entries.next();
+			Snapshot current = Snapshot.of(fileSourceDir.resolve(entry.getKey()), now);
+			Snapshot previous = entry.getValue();
+
+			if (current == null) {
+				// Removed or renamed before it landed
+				entries.remove();
+			} else if (!current.sameAs(previous)) {
+				entry.setValue(current);
+			} else if (now - previous.observedAt() >= stablePeriod.toNanos()) {
+				landed.add(entry.getKey());
+				entries.remove();
+			}
+		}
+
+		if (!landed.isEmpty()) {
+			run(landed);
+		}
+	}
+
+	private void run(Set<String> landed) {
+		log.info("{} landed in {}, starting import", landed, fileSourceDir.toAbsolutePath());
+		try {
+			Set<String> jobs = new HashSet<>();
+			landed.forEach(fileName -> jobs.add(Compression.baseName(fileName)));
+			if (jobs.contains(orgFileName) && jobs.contains(empFileName)) {
+				importJobGraph.runAll();
+			} else if (jobs.contains(orgFileName)) {
+				scheduler.importOrganizationsJob();
+			} else {
+				scheduler.importEmployeesJob();
+			}
+		} catch (RuntimeException e) {
+			log.error("Import started by {} failed", landed, e);
+		}
+	}
+
+	/**
+	 * Size and modification time of a file, and when they were first seen.
+	 */
+	private record Snapshot(long size, FileTime lastModified, long observedAt) {
+
+		static Snapshot of(Path file, long now) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				return new Snapshot(attributes.size(), attributes.lastModifiedTime(), now);
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException e) {
+				log.warn("Failed to read attributes of {}", file, e);
+				return null;
+			}
+		}
+
+		boolean sameAs(Snapshot other) {
+			return other != null && size == other.size && lastModified.equals(other.lastModified);
+		}
+	}
+}
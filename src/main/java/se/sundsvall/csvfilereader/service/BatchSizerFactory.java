@@ -0,0 +1,39 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.sundsvall.csvfilereader.service.utility.AdaptiveBatchSizer;
+
+/**
+ * Creates the batch sizer for an import run. The configured batch size of the job is the initial size, and the only
+ * size when adaptive sizing is disabled.
+ */
+@Component
+public class BatchSizerFactory {
+
+	@Value("${import.adaptive-batch-size}")
+	private boolean adaptive;
+
+	@Value("${import.batch-size-min}")
+	private int minSize;
+
+	@Value("${import.batch-size-max}")
+	private int maxSize;
+
+	@Value("${import.batch-target-latency}")
+	private Duration targetLatency;
+
+	private final ImportMetrics importMetrics;
+
+	public BatchSizerFactory(ImportMetrics importMetrics) {
+		this.importMetrics = importMetrics;
+	}
+
+	public AdaptiveBatchSizer create(String job, int initialSize) {
+		if (!adaptive) {
+			return AdaptiveBatchSizer.fixed(initialSize, size -> importMetrics.batchSize(job, size));
+		}
+		return new AdaptiveBatchSizer(initialSize, minSize, maxSize, targetLatency, size -> importMetrics.batchSize(job, size));
+	}
+}
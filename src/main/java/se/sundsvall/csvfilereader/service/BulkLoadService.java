@@ -0,0 +1,183 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import se.sundsvall.csvfilereader.service.utility.TsvRowInputStream;
+
+/**
+ * Full refresh through MariaDB's native bulk path. Rows are streamed with LOAD DATA LOCAL INFILE into a temporary
+ * staging table and merged into the live table with set based statements. Everything runs on a single connection
+ * since temporary tables are connection scoped. Requires allowLocalInfile=true on the JDBC url and local_infile
+ * enabled on the server.
+ */
+@Service
+public class BulkLoadService {
+
+	private static final Logger log = LoggerFactory.getLogger(BulkLoadService.class);
+
+	private static final String EMPLOYEE_COLUMNS = "person_id, first_name, last_name, work_mobile, work_phone, work_title, org_id, email, manager_id, manager_code, active_employee";
+	private static final String ORGANIZATION_COLUMNS = "company_id, org_id, org_name, parent_org_id, tree_level";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ImportMetrics importMetrics;
+	private final EmployeeDeactivationService deactivationService;
+
+	public BulkLoadService(JdbcTemplate jdbcTemplate, ImportMetrics importMetrics, EmployeeDeactivationService deactivationService) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.importMetrics = importMetrics;
+		this.deactivationService = deactivationService;
+	}
+
+	/**
+	 * Loads employee rows in {@value #EMPLOYEE_COLUMNS} order, remaps unknown organizations and deactivates employees
+	 * missing from the rows, with the same chunked sweep and ratio guard as the other engines.
+	 */
+	public void loadEmployees(Iterator<Object[]> rows) {
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP TEMPORARY TABLE IF EXISTS employee_stage");
+				statement.execute("CREATE TEMPORARY TABLE employee_stage (INDEX (person_id)) SELECT " + EMPLOYEE_COLUMNS + " FROM employee WHERE 1 = 0");
+				try {
+					long startedAt = System.nanoTime();
+					long loaded = loadData(connection, "employee_stage", EMPLOYEE_COLUMNS, rows);
+					log.info("[EMP] bulk load complete. Rows staged: {}", loaded);
+					importMetrics.rowsRead(ImportMetrics.EMP_IMPORT, loaded, System.nanoTime() - startedAt);
+
+					int remapped = statement.executeUpdate("""
+						UPDATE employee_stage s
+						LEFT JOIN organization o ON o.org_id = s.org_id
+						SET s.org_id = 'UNKNOWN'
+						WHERE s.org_id IS NOT NULL
+						  AND o.org_id IS NULL
+						""");
+					log.info("[EMP] org_id not found, set to UNKNOWN for {} staged employees", remapped);
+					importMetrics.unknownOrganizations(ImportMetrics.EMP_IMPORT, remapped);
+
+					statement.executeUpdate("""
+						INSERT INTO employee (%s)
+						SELECT %s FROM employee_stage
+						ON DUPLICATE KEY UPDATE
+						    first_name      = VALUES(first_name),
+						    last_name       = VALUES(last_name),
+						    work_mobile     = VALUES(work_mobile),
+						    work_phone      = VALUES(work_phone),
+						    work_title      = VALUES(work_title),
+						    email           = VALUES(email),
+						    manager_id      = VALUES(manager_id),
+						    manager_code    = VALUES(manager_code),
+						    active_employee = VALUES(active_employee),
+						    updated_at      = CURRENT_TIMESTAMP
+						""".formatted(EMPLOYEE_COLUMNS, EMPLOYEE_COLUMNS));
+					log.info("[EMP] merge of staged employees complete");
+
+					int deactivated = deactivationService.deactivateNotInStage(connection);
+					log.info("[EMP] non updated employees set to inactive: {}", deactivated);
+					importMetrics.deactivated(ImportMetrics.EMP_IMPORT, deactivated);
+				} finally {
+					statement.execute("DROP TEMPORARY TABLE IF EXISTS employee_stage");
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Loads organization rows in {@value #ORGANIZATION_COLUMNS} order.
+	 */
+	public void loadOrganizations(Iterator<Object[]> rows) {
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP TEMPORARY TABLE IF EXISTS organization_stage");
+				statement.execute("CREATE TEMPORARY TABLE organization_stage SELECT " + ORGANIZATION_COLUMNS + " FROM organization WHERE 1 = 0");
+				try {
+					long startedAt = System.nanoTime();
+					long loaded = loadData(connection, "organization_stage", ORGANIZATION_COLUMNS, rows);
+					log.info("[ORG] bulk load complete. Rows staged: {}", loaded);
+					importMetrics.rowsRead(ImportMetrics.ORG_IMPORT, loaded, System.nanoTime() - startedAt);
+
+					statement.executeUpdate("""
+						INSERT INTO organization (%s)
+						SELECT %s FROM organization_stage
+						ON DUPLICATE KEY UPDATE
+						  org_name = VALUES(org_name),
+						  parent_org_id = VALUES(parent_org_id),
+						  tree_level = VALUES(tree_level)
+						""".formatted(ORGANIZATION_COLUMNS, ORGANIZATION_COLUMNS));
+					log.info("[ORG] merge of staged organizations complete");
+				} finally {
+					statement.execute("DROP TEMPORARY TABLE IF EXISTS organization_stage");
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Replaces the organization table by the given rows in {@value #ORGANIZATION_COLUMNS} order. The rows are loaded
+	 * into organization_next, a copy of the table's definition, which is swapped in together with moving the live
+	 * table to organization_previous in a single RENAME TABLE. Readers see the old or the new table, never a mix, and
+	 * organizations missing from the rows are gone. The previous generation is kept until the next swap, putting it
+	 * back is another RENAME TABLE. The generation before it is renamed aside in the same statement and only dropped
+	 * once the swap succeeded.
+	 * <p>
+	 * The last addedRows rows are added by the caller rather than read from the file. Without any other row the file
+	 * was empty and the live table is kept.
+	 */
+	public void swapOrganizations(Iterator<Object[]> rows, long addedRows) {
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP TABLE IF EXISTS organization_next");
+				statement.execute("CREATE TABLE organization_next LIKE organization");
+				try {
+					long startedAt = System.nanoTime();
+					long loaded = loadData(connection, "organization_next", ORGANIZATION_COLUMNS, rows);
+					log.info("[ORG] bulk load complete. Rows loaded into organization_next: {}", loaded);
+					importMetrics.rowsRead(ImportMetrics.ORG_IMPORT, loaded, System.nanoTime() - startedAt);
+					if (loaded <= addedRows) {
+						throw new IllegalStateException("No organizations in the file, keeping the live organization table");
+					}
+
+					statement.execute("DROP TABLE IF EXISTS organization_retired");
+					if (exists(statement, "organization_previous")) {
+						statement.execute("""
+							RENAME TABLE organization_previous TO organization_retired,
+							  organization TO organization_previous,
+							  organization_next TO organization
+							""");
+						statement.execute("DROP TABLE organization_retired");
+					} else {
+						statement.execute("RENAME TABLE organization TO organization_previous, organization_next TO organization");
+					}
+					log.info("[ORG] organization_next swapped in, previous generation kept as organization_previous");
+				} finally {
+					statement.execute("DROP TABLE IF EXISTS organization_next");
+				}
+			}
+			return null;
+		});
+	}
+
+	private static boolean exists(Statement statement, String table) throws SQLException {
+		try (ResultSet rs = statement.executeQuery(
+			"SELECT 1 FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = '" + table + "'")) {
+			return rs.next();
+		}
+	}
+
+	private long loadData(Connection connection, String table, String columns, Iterator<Object[]> rows) throws SQLException {
+		TsvRowInputStream input = new TsvRowInputStream(rows);
+		try (Statement statement = connection.createStatement()) {
+			statement.unwrap(org.mariadb.jdbc.Statement.class).setLocalInfileInputStream(input);
+			statement.execute("LOAD DATA LOCAL INFILE '" + table + ".tsv' INTO TABLE " + table + " CHARACTER SET utf8mb4 (" + columns + ")");
+		}
+		return input.getRowCount();
+	}
+}
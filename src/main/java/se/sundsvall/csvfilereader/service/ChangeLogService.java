@@ -0,0 +1,170 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import se.sundsvall.csvfilereader.db.ChangeLogRepository;
+import se.sundsvall.csvfilereader.file.ChangeLogFile;
+import se.sundsvall.csvfilereader.file.ChangeLogFile.Change;
+
+/**
+ * Publishes what an import run actually changed, so that other systems can process deltas instead of scanning the
+ * tables. Before the run the live rows are copied to a snapshot table inside the database, after the run the table and
+ * the snapshot are compared by the database in chunks of {@value #CHUNK_ROWS} keys, in key order. Only one chunk is
+ * held in memory at a time, the changes go straight to the {@link ChangeLogFile}, which is registered in the change_log
+ * outbox table once complete.
+ * <p>
+ * The comparison is on the tables rather than on the rows written, so it works the same for every import engine and
+ * includes the deactivation sweep.
+ */
+@Service
+public class ChangeLogService {
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeLogService.class);
+
+	static final int CHUNK_ROWS = 1000;
+
+	public static final Entity EMPLOYEES = new Entity("employee", "person_id", "t.active_employee = true",
+		List.of("first_name", "last_name", "work_mobile", "work_phone", "work_title", "org_id", "email", "manager_id", "manager_code"),
+		Change.DEACTIVATED);
+
+	public static final Entity ORGANIZATIONS = new Entity("organization", "org_id", "true",
+		List.of("company_id", "org_name", "parent_org_id", "tree_level"),
+		Change.DELETED);
+
+	@Value("${import.change-log.enabled}")
+	private boolean enabled;
+
+	@Value("${import.change-log.outbox-dir}")
+	private Path outboxDir;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final ChangeLogRepository changeLogRepository;
+
+	public ChangeLogService(JdbcTemplate jdbcTemplate, ChangeLogRepository changeLogRepository) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.changeLogRepository = changeLogRepository;
+	}
+
+	/**
+	 * Copies the entity's live rows to its snapshot table, call before the import writes anything.
+	 */
+	public Capture capture(String job, Entity entity) {
+		if (!enabled) {
+			return new Capture(job, entity, false);
+		}
+
+		jdbcTemplate.execute("DROP TABLE IF EXISTS " + entity.snapshot());
+		jdbcTemplate.execute("CREATE TABLE " + entity.snapshot() + " (PRIMARY KEY (" + entity.key() + ")) SELECT t." + entity.key() + ", " +
+			entity.columns().stream().map(column -> "t." + column).collect(Collectors.joining(", ")) +
+			" FROM " + entity.table() + " t WHERE " + entity.live());
+		return new Capture(job, entity, true);
+	}
+
+	/**
+	 * A table with its key, the condition selecting its live rows as t, the columns compared and the change of a row
+	 * that is no longer live.
+	 */
+	public record Entity(String table, String key, String live, List<String> columns, Change removed) {
+
+		String snapshot() {
+			return table + "_change_snapshot";
+		}
+
+		/**
+		 * Live rows that are new or differ from the snapshot, the key and whether the row is new.
+		 */
+		String changed(boolean first) {
+			return "SELECT t." + key + ", s." + key + " IS NULL FROM " + table + " t LEFT JOIN " + snapshot() + " s ON s." + key + " = t." + key +
+				" WHERE " + live + (first ? "" : " AND t." + key + " > ?") +
+				" AND (s." + key + " IS NULL OR NOT (" + columns.stream().map(column -> "t." + column + " <=> s." + column).collect(Collectors.joining(" AND ")) + "))" +
+				" ORDER BY t." + key + " LIMIT " + CHUNK_ROWS;
+		}
+
+		/**
+		 * Keys of the snapshot without a live row.
+		 */
+		String removed(boolean first) {
+			return "SELECT s." + key + " FROM " + snapshot() + " s LEFT JOIN " + table + " t ON t." + key + " = s." + key + " AND " + live +
+				" WHERE t." + key + " IS NULL" + (first ? "" : " AND s." + key + " > ?") +
+				" ORDER BY s." + key + " LIMIT " + CHUNK_ROWS;
+		}
+	}
+
+	/**
+	 * The snapshot of one entity taken before a run.
+	 */
+	public final class Capture {
+
+		private final String job;
+		private final Entity entity;
+		private boolean pending;
+
+		private Capture(String job, Entity entity, boolean pending) {
+			this.job = job;
+			this.entity = entity;
+			this.pending = pending;
+		}
+
+		/**
+		 * Compares the live rows with the snapshot and publishes the differences. Also called after a failed run, the
+		 * batches it committed are changes all the same. Drops the snapshot, a capture is published once.
+		 */
+		public void publish() {
+			if (!pending) {
+				return;
+			}
+			pending = false;
+
+			ChangeLogFile file = new ChangeLogFile(outboxDir, job);
+			try (file) {
+				String last = null;
+				do {
+					last = chunk(entity.changed(last == null), last,
+						rs -> file.write(entity.table(), rs.getString(1), rs.getBoolean(2) ? Change.INSERTED : Change.UPDATED));
+				} while (last != null);
+				do {
+					last = chunk(entity.removed(last == null), last, rs -> file.write(entity.table(), rs.getString(1), entity.removed()));
+				} while (last != null);
+				file.commit();
+			} catch (IOException e) {
+				throw new IllegalStateException("Failed to write change log " + file.path(), e);
+			} finally {
+				jdbcTemplate.execute("DROP TABLE IF EXISTS " + entity.snapshot());
+			}
+
+			if (file.hasChanges()) {
+				changeLogRepository.save(job, file);
+			} else {
+				log.info("No {} changes to publish for {}", entity.table(), job);
+			}
+		}
+
+		/**
+		 * Passes the rows of one chunk after the given key to the consumer, and returns the last key of a full chunk, or
+		 * null once there is nothing more to read.
+		 */
+		private String chunk(String sql, String after, RowCallbackHandler handler) {
+			String[] last = new String[1];
+			int[] rows = new int[1];
+			RowCallbackHandler counting = rs -> {
+				handler.processRow(rs);
+				last[0] = rs.getString(1);
+				rows[0]++;
+			};
+			if (after == null) {
+				jdbcTemplate.query(sql, counting);
+			} else {
+				jdbcTemplate.query(sql, counting, after);
+			}
+			return rows[0] < CHUNK_ROWS ? null : last[0];
+		}
+	}
+}
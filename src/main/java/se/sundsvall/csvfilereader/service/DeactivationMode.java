@@ -0,0 +1,13 @@
+package se.sundsvall.csvfilereader.service;
+
+/**
+ * How the employee import finds the employees that are no longer in the file.
+ */
+public enum DeactivationMode {
+
+	/** Every imported row gets a new updated_at, rows not updated since the run started are deactivated */
+	TIMESTAMP,
+
+	/** The person ids in the file are recorded for the run, employees without a recorded id are deactivated */
+	SEEN_KEYS
+}
@@ -0,0 +1,126 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import se.sundsvall.csvfilereader.api.model.Employee;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.service.utility.Hierarchy;
+
+/**
+ * Immutable snapshot of the imported organizations and active employees, indexed for the read API. A snapshot is never
+ * changed after it is built, a new import builds a new one which replaces it as a whole.
+ */
+public final class DirectoryIndex {
+
+	private final Map<String, Employee> employeesByPersonId;
+	private final Map<String, Employee> employeesByEmail;
+	private final Map<String, Organization> organizationsById;
+	private final Map<String, List<Organization>> childrenByOrgId;
+
+	private DirectoryIndex(Map<String, Employee> employeesByPersonId, Map<String, Employee> employeesByEmail,
+		Map<String, Organization> organizationsById, Map<String, List<Organization>> childrenByOrgId) {
+		this.employeesByPersonId = employeesByPersonId;
+		this.employeesByEmail = employeesByEmail;
+		this.organizationsById = organizationsById;
+		this.childrenByOrgId = childrenByOrgId;
+	}
+
+	/**
+	 * Indexes the given rows. An email shared by several employees resolves to the first of them.
+	 */
+	public static DirectoryIndex of(Collection<Organization> organizations, Collection<Employee> employees) {
+		Map<String, Employee> employeesByPersonId = HashMap.newHashMap(employees.size());
+		Map<String, Employee> employeesByEmail = HashMap.newHashMap(employees.size());
+		for (Employee employee : employees) {
+			employeesByPersonId.put(employee.personId(), employee);
+			if (employee.email() != null) {
+				employeesByEmail.putIfAbsent(normalizeEmail(employee.email()), employee);
+			}
+		}
+
+		Map<String, Organization> organizationsById = HashMap.newHashMap(organizations.size());
+		Map<String, List<Organization>> childrenByOrgId = new HashMap<>();
+		for (Organization organization : organizations) {
+			organizationsById.put(organization.orgId(), organization);
+			if (organization.parentOrgId() != null && !organization.parentOrgId().equals(organization.orgId())) {
+				childrenByOrgId.computeIfAbsent(organization.parentOrgId(), parent -> new ArrayList<>()).add(organization);
+			}
+		}
+		childrenByOrgId.replaceAll((parent, children) -> {
+			children.sort(Comparator.comparing(Organization::orgId));
+			return List.copyOf(children);
+		});
+
+		return new DirectoryIndex(employeesByPersonId, employeesByEmail, organizationsById, childrenByOrgId);
+	}
+
+	public Optional<Employee> employee(String personId) {
+		return Optional.ofNullable(employeesByPersonId.get(personId));
+	}
+
+	/**
+	 * The employee with the email, compared ignoring case.
+	 */
+	public Optional<Employee> employeeByEmail(String email) {
+		return Optional.ofNullable(employeesByEmail.get(normalizeEmail(email)));
+	}
+
+	public Optional<Organization> organization(String orgId) {
+		return Optional.ofNullable(organizationsById.get(orgId));
+	}
+
+	/**
+	 * The organization followed by all organizations below it, depth first. A cycle in the parent ids ends the walk
+	 * before an organization repeats, and it stops at the same depth as the hierarchy tables.
+	 */
+	public Optional<List<Organization>> subtree(String orgId) {
+		Organization root = organizationsById.get(orgId);
+		if (root == null) {
+			return Optional.empty();
+		}
+
+		List<Organization> subtree = new ArrayList<>();
+		Set<String> visited = new HashSet<>();
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push(new Node(root, 0));
+		while (!stack.isEmpty()) {
+			Node node = stack.pop();
+			if (!visited.add(node.organization().orgId())) {
+				continue;
+			}
+			subtree.add(node.organization());
+			if (node.depth() < Hierarchy.MAX_DEPTH) {
+				List<Organization> children = childrenByOrgId.getOrDefault(node.organization().orgId(), List.of());
+				for (int i = children.size() - 1; i >= 0; i--) {
+					stack.push(new Node(children.get(i), node.depth() + 1));
+				}
+			}
+		}
+		return Optional.of(subtree);
+	}
+
+	public int employees() {
+		return employeesByPersonId.size();
+	}
+
+	public int organizations() {
+		return organizationsById.size();
+	}
+
+	private static String normalizeEmail(String email) {
+		return email.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private record Node(Organization organization, int depth) {
+	}
+}
@@ -0,0 +1,172 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import se.sundsvall.csvfilereader.api.model.Employee;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.db.JobLock;
+import se.sundsvall.csvfilereader.db.JobLockRepository;
+
+/**
+ * Holds the {@link DirectoryIndex} the read API is served from. The index is rebuilt from the tables once an import has
+ * completed and swapped in as a whole, readers keep the snapshot they started with and never wait for a rebuild.
+ * <p>
+ * The tables are only read while neither import holds its lock on any instance, so a snapshot never contains a half
+ * imported file. Both are read in one read-only REPEATABLE READ transaction, so they are from the same point in time,
+ * and a snapshot is dropped when an import took its lock while the tables were read. The periodic refresh picks up
+ * imports that ran on other instances.
+ */
+@Service
+public class DirectoryService {
+
+	private static final Logger log = LoggerFactory.getLogger(DirectoryService.class);
+
+	@Value("${directory.enabled}")
+	private boolean enabled;
+
+	@Value("${scheduler.scheduled-org-import.name}")
+	private String orgJobName;
+	@Value("${scheduler.scheduled-emp-import.name}")
+	private String empJobName;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final JobLockRepository jobLockRepository;
+
+	private volatile DirectoryIndex index;
+
+	public DirectoryService(JdbcTemplate jdbcTemplate, JobLockRepository jobLockRepository) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.jobLockRepository = jobLockRepository;
+	}
+
+	/**
+	 * The current snapshot, empty until the tables have been read once.
+	 */
+	public Optional<DirectoryIndex> index() {
+		return Optional.ofNullable(index);
+	}
+
+	/**
+	 * Rebuilds the index after the given job completed, unless the other import is still running. The lock of the
+	 * calling job is still held and not checked.
+	 */
+	public void refreshAfter(String jobName) {
+		if (enabled) {
+			refreshUnlessImporting(jobName.equals(orgJobName) ? empJobName : orgJobName);
+		}
+	}
+
+	@Scheduled(initialDelayString = "PT0S", fixedDelayString = "${directory.refresh-interval}")
+	public void refresh() {
+		if (enabled) {
+			refreshUnlessImporting(orgJobName, empJobName);
+		}
+	}
+
+	private synchronized void refreshUnlessImporting(String... jobNames) {
+		List<Timestamp> lockedAt = lastLocked(jobNames);
+		if (lockedAt == null) {
+			return;
+		}
+
+		long startedAt = System.nanoTime();
+		DirectoryIndex loaded = jdbcTemplate.execute((ConnectionCallback<DirectoryIndex>) this::load);
+		if (!lockedAt.equals(lastLocked(jobNames))) {
+			log.info("An import started while the tables were read, directory index not refreshed");
+			return;
+		}
+		index = loaded;
+		log.info("Directory index refreshed with {} organizations and {} employees in {} ms", loaded.organizations(), loaded.employees(),
+			(System.nanoTime() - startedAt) / 1_000_000);
+	}
+
+	/**
+	 * When each of the jobs last took its lock, or null while one of them holds it.
+	 */
+	private List<Timestamp> lastLocked(String... jobNames) {
+		List<Timestamp> lockedAt = new ArrayList<>();
+		for (String jobName : jobNames) {
+			Optional<JobLock> lock = jobLockRepository.findByJobName(jobName);
+			if (lock.map(JobLock::held).orElse(false)) {
+				log.info("{} is running, directory index not refreshed", jobName);
+				return null;
+			}
+			lockedAt.add(lock.map(JobLock::lockedAt).orElse(null));
+		}
+		return lockedAt;
+	}
+
+	private DirectoryIndex load(Connection connection) throws SQLException {
+		boolean autoCommit = connection.getAutoCommit();
+		boolean readOnly = connection.isReadOnly();
+		int isolation = connection.getTransactionIsolation();
+		connection.setReadOnly(true);
+		connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+		connection.setAutoCommit(false);
+		try (Statement statement = connection.createStatement()) {
+			DirectoryIndex loaded = DirectoryIndex.of(loadOrganizations(statement), loadEmployees(statement));
+			connection.commit();
+			return loaded;
+		} catch (SQLException | RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+			connection.setTransactionIsolation(isolation);
+			connection.setReadOnly(readOnly);
+		}
+	}
+
+	private static List<Organization> loadOrganizations(Statement statement) throws SQLException {
+		List<Organization> organizations = new ArrayList<>();
+		try (ResultSet rs = statement.executeQuery("SELECT company_id, org_id, org_name, parent_org_id, tree_level FROM organization")) {
+			while (rs.next()) {
+				organizations.add(new Organization(
+					rs.getObject(1, Integer.class),
+					rs.getString(2),
+					rs.getString(3),
+					rs.getString(4),
+					rs.getObject(5, Integer.class)));
+			}
+		}
+		return organizations;
+	}
+
+	private static List<Employee> loadEmployees(Statement statement) throws SQLException {
+		List<Employee> employees = new ArrayList<>();
+		try (ResultSet rs = statement.executeQuery("""
+			SELECT person_id, first_name, last_name, work_mobile, work_phone, work_title, org_id, email, manager_id, manager_code
+			FROM employee
+			WHERE active_employee = true
+			ORDER BY person_id
+			""")) {
+			while (rs.next()) {
+				employees.add(new Employee(
+					rs.getString(1),
+					rs.getString(2),
+					rs.getString(3),
+					rs.getString(4),
+					rs.getString(5),
+					rs.getString(6),
+					rs.getString(7),
+					rs.getString(8),
+					rs.getString(9),
+					rs.getString(10)));
+			}
+		}
+		return employees;
+	}
+}
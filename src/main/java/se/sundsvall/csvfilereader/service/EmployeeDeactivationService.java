@@ -0,0 +1,148 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Deactivates the employees that were missing from an import. The sweep walks the employee table in person_id ranges
+ * of at most import.deactivation-chunk-size rows, each range updated by its own short statement with an optional
+ * pause in between, so that readers of the table are never blocked for long. Before anything is changed the number of
+ * employees to deactivate is compared to the active employees, and the sweep is refused when the share is above
+ * import.deactivation-max-ratio, which is what a truncated export looks like.
+ */
+@Service
+public class EmployeeDeactivationService {
+
+	private static final Logger log = LoggerFactory.getLogger(EmployeeDeactivationService.class);
+
+	private static final Sweep NOT_UPDATED_SINCE = new Sweep("",
+		"e.active_employee = true AND (e.updated_at IS NULL OR e.updated_at < ?)");
+
+	private static final Sweep NOT_SEEN_BY_RUN = new Sweep(" LEFT JOIN import_run_seen_key s ON s.run_id = ? AND s.person_id = e.person_id",
+		"e.active_employee = true AND s.person_id IS NULL");
+
+	private static final Sweep NOT_IN_STAGE = new Sweep(" LEFT JOIN employee_stage s ON s.person_id = e.person_id",
+		"e.active_employee = true AND s.person_id IS NULL");
+
+	@Value("${import.deactivation-chunk-size}")
+	private int chunkSize;
+
+	@Value("${import.deactivation-pause}")
+	private Duration pause;
+
+	@Value("${import.deactivation-max-ratio}")
+	private double maxRatio;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public EmployeeDeactivationService(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Deactivates active employees whose updated_at is older than the start of the import.
+	 */
+	public int deactivateNotUpdatedSince(Timestamp importStartedAt) {
+		return sweep(jdbcTemplate, NOT_UPDATED_SINCE, importStartedAt);
+	}
+
+	/**
+	 * Deactivates active employees whose person_id was not seen by the import run.
+	 */
+	public int deactivateNotSeenBy(long runId) {
+		return sweep(jdbcTemplate, NOT_SEEN_BY_RUN, runId);
+	}
+
+	/**
+	 * Deactivates active employees missing from the temporary employee_stage table. The table only exists on the
+	 * connection that loaded it, so the sweep runs on that connection, which is left open.
+	 */
+	public int deactivateNotInStage(Connection connection) {
+		return sweep(new JdbcTemplate(new SingleConnectionDataSource(connection, true)), NOT_IN_STAGE);
+	}
+
+	private int sweep(JdbcTemplate template, Sweep sweep, Object... parameters) {
+		long toDeactivate = count(template, "SELECT COUNT(*) FROM employee e" + sweep.join() + " WHERE " + sweep.condition(), parameters);
+		if (toDeactivate == 0) {
+			return 0;
+		}
+
+		long active = count(template, "SELECT COUNT(*) FROM employee WHERE active_employee = true");
+		if (toDeactivate > active * maxRatio) {
+			throw new IllegalStateException("Refusing to deactivate " + toDeactivate + " of " + active +
+				" active employees, more than the allowed ratio " + maxRatio);
+		}
+
+		String update = "UPDATE employee e" + sweep.join() + " SET e.active_employee = false WHERE " + sweep.condition();
+		int deactivated = 0;
+		int chunks = 0;
+		String from = null;
+		do {
+			String to = upperBound(template, from);
+
+			List<Object> args = new ArrayList<>(List.of(parameters));
+			StringBuilder sql = new StringBuilder(update);
+			if (from != null) {
+				sql.append(" AND e.person_id > ?");
+				args.add(from);
+			}
+			if (to != null) {
+				sql.append(" AND e.person_id <= ?");
+				args.add(to);
+			}
+			deactivated += template.update(sql.toString(), args.toArray());
+			chunks++;
+
+			from = to;
+			if (from != null) {
+				pause();
+			}
+		} while (from != null);
+
+		log.info("[EMP] deactivation sweep complete. {} employees deactivated in {} chunks", deactivated, chunks);
+		return deactivated;
+	}
+
+	/**
+	 * The last person_id of the next chunk after {@code from}, or null when the rest of the table fits in one chunk.
+	 */
+	private String upperBound(JdbcTemplate template, String from) {
+		List<String> bound = from == null
+			? template.queryForList("SELECT person_id FROM employee ORDER BY person_id LIMIT 1 OFFSET ?", String.class, Math.max(1, chunkSize) - 1)
+			: template.queryForList("SELECT person_id FROM employee WHERE person_id > ? ORDER BY person_id LIMIT 1 OFFSET ?", String.class, from, Math.max(1, chunkSize) - 1);
+
+		return bound.isEmpty() ? null : bound.getFirst();
+	}
+
+	private static long count(JdbcTemplate template, String sql, Object... args) {
+		Long count = template.queryForObject(sql, Long.class, args);
+		return count == null ? 0 : count;
+	}
+
+	private void pause() {
+		if (pause.isZero() || pause.isNegative()) {
+			return;
+		}
+		try {
+			Thread.sleep(pause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Deactivation sweep interrupted", e);
+		}
+	}
+
+	/**
+	 * Optional join and the condition selecting the employees to deactivate, together taking the parameters of the sweep.
+	 */
+	private record Sweep(String join, String condition) {
+	}
+}
@@ -1,152 +1,595 @@
 package se.sundsvall.csvfilereader.service;
 
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-import java.io.BufferedReader;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import se.sundsvall.csvfilereader.db.ImportCheckpoint;
+import se.sundsvall.csvfilereader.db.ImportCheckpointRepository;
+import se.sundsvall.csvfilereader.db.ImportRunRepository;
 import se.sundsvall.csvfilereader.db.dto.EmployeeDTO;
+import se.sundsvall.csvfilereader.file.DeadLetterFile;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache.OrganizationIds;
+import se.sundsvall.csvfilereader.service.utility.AdaptiveBatchSizer;
+import se.sundsvall.csvfilereader.service.utility.BatchPipeline;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.CommitWatermark;
+import se.sundsvall.csvfilereader.service.utility.CsvFormat;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+import se.sundsvall.csvfilereader.service.utility.CsvRowException;
+import se.sundsvall.csvfilereader.service.utility.CsvRowReader;
 import se.sundsvall.csvfilereader.service.utility.ImportUtil;
 
 @Service
 public class EmployeeImportService {
 
+	public static final CsvFormat<EmployeeDTO> CSV_FORMAT = new CsvFormat<>(';',
+		new String[] {
+			"PersonId", "Givenname", "Lastname", "WorkMobile", "WorkPhone", "Title", "OrgId", "PrimaryEMailAddress", "ManagerId", "ManagerCode"
+		},
+		EmployeeDTO.class,
+		row -> new String[] {
+			row.PersonId, row.Givenname, row.Lastname, row.WorkMobile, row.WorkPhone, row.Title, row.OrgId, row.PrimaryEMailAddress, row.ManagerId, row.ManagerCode
+		});
+
+	private static final String UPSERT_SQL = """
+		INSERT INTO employee (person_id, first_name, last_name, work_mobile, work_phone, work_title, org_id, email, manager_id, manager_code, active_employee)
+		VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+			ON DUPLICATE KEY UPDATE
+			    first_name      = VALUES(first_name),
+			    last_name       = VALUES(last_name),
+			    work_mobile     = VALUES(work_mobile),
+			    work_phone      = VALUES(work_phone),
+			    work_title      = VALUES(work_title),
+			    email           = VALUES(email),
+			    manager_id      = VALUES(manager_id),
+			    manager_code    = VALUES(manager_code),
+			    active_employee = VALUES(active_employee),
+			    updated_at      = CURRENT_TIMESTAMP
+		""";
+
+	/**
+	 * Same upsert, but updated_at only moves when a value changed. A row without changes is then left untouched, which
+	 * the seen keys deactivation allows since it does not depend on updated_at. updated_at must be assigned first, the
+	 * assignments are evaluated left to right.
+	 */
+	private static final String UPSERT_CHANGED_SQL = """
+		INSERT INTO employee (person_id, first_name, last_name, work_mobile, work_phone, work_title, org_id, email, manager_id, manager_code, active_employee)
+		VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+			ON DUPLICATE KEY UPDATE
+			    updated_at      = IF(first_name <=> VALUES(first_name)
+			                         AND last_name <=> VALUES(last_name)
+			                         AND work_mobile <=> VALUES(work_mobile)
+			                         AND work_phone <=> VALUES(work_phone)
+			                         AND work_title <=> VALUES(work_title)
+			                         AND email <=> VALUES(email)
+			                         AND manager_id <=> VALUES(manager_id)
+			                         AND manager_code <=> VALUES(manager_code)
+			                         AND active_employee <=> VALUES(active_employee), updated_at, CURRENT_TIMESTAMP),
+			    first_name      = VALUES(first_name),
+			    last_name       = VALUES(last_name),
+			    work_mobile     = VALUES(work_mobile),
+			    work_phone      = VALUES(work_phone),
+			    work_title      = VALUES(work_title),
+			    email           = VALUES(email),
+			    manager_id      = VALUES(manager_id),
+			    manager_code    = VALUES(manager_code),
+			    active_employee = VALUES(active_employee)
+		""";
+
+	private static final String FINGERPRINT_SQL = """
+		INSERT INTO employee_fingerprint (person_id, row_hash)
+		VALUES (?, ?)
+			ON DUPLICATE KEY UPDATE
+			    row_hash = VALUES(row_hash)
+		""";
+
+	private static final int PERSON_ID_INDEX = 0;
+	private static final int TITLE_INDEX = 5;
+	private static final int ORG_ID_INDEX = 6;
+	private static final int EMAIL_INDEX = 7;
+	private static final int MANAGER_CODE_INDEX = 9;
+	private static final boolean ACTIVE = true;
+	private static final long NO_RUN = 0;
+
 	@Value("${import.employee-batch-size}")
 	private int batchSize;
 
+	@Value("${import.employee-delta-enabled}")
+	private boolean deltaEnabled;
+
+	@Value("${import.csv-reader}")
+	private CsvReaderType csvReader;
+
+	@Value("${import.employee-engine}")
+	private ImportEngine engine;
+
+	@Value("${import.employee-writer-threads}")
+	private int writerThreads;
+
+	@Value("${import.employee-queue-capacity}")
+	private int queueCapacity;
+
+	@Value("${import.employee-checkpoint-enabled}")
+	private boolean checkpointEnabled;
+
+	@Value("${import.employee-deactivation}")
+	private DeactivationMode deactivation;
+
+	@Value("${import.failed-dir}")
+	private Path failedDir;
+
+	@Value("${import.max-rejected-rows}")
+	private int maxRejectedRows;
+
+	@Value("${import.hierarchy-enabled}")
+	private boolean hierarchyEnabled;
+
 	private static final Logger log = LoggerFactory.getLogger(EmployeeImportService.class);
 
 	private final JdbcTemplate jdbcTemplate;
+	private final BulkLoadService bulkLoadService;
+	private final OrganizationIdCache organizationIdCache;
+	private final ImportMetrics importMetrics;
+	private final ImportCheckpointRepository checkpointRepository;
+	private final BatchSizerFactory batchSizerFactory;
+	private final ImportRunRepository importRunRepository;
+	private final EmployeeDeactivationService deactivationService;
+	private final MultiRowUpsertWriter multiRowUpsertWriter;
+	private final HierarchyService hierarchyService;
+	private final ImportThreads importThreads;
 
-	public EmployeeImportService(JdbcTemplate jdbcTemplate) {
+	public EmployeeImportService(JdbcTemplate jdbcTemplate, BulkLoadService bulkLoadService, OrganizationIdCache organizationIdCache,
+		ImportMetrics importMetrics, ImportCheckpointRepository checkpointRepository, BatchSizerFactory batchSizerFactory,
+		ImportRunRepository importRunRepository, EmployeeDeactivationService deactivationService, MultiRowUpsertWriter multiRowUpsertWriter,
+		HierarchyService hierarchyService, ImportThreads importThreads) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.bulkLoadService = bulkLoadService;
+		this.organizationIdCache = organizationIdCache;
+		this.importMetrics = importMetrics;
+		this.checkpointRepository = checkpointRepository;
+		this.batchSizerFactory = batchSizerFactory;
+		this.importRunRepository = importRunRepository;
+		this.deactivationService = deactivationService;
+		this.multiRowUpsertWriter = multiRowUpsertWriter;
+		this.hierarchyService = hierarchyService;
+		this.importThreads = importThreads;
 	}
 
 	public void importEmployee(Path empCsv) {
+		importEmployee(empCsv, () -> {});
+	}
+
+	/**
+	 * Imports the file, calling awaitOrganizations right before org ids are first resolved. Reading and parsing the
+	 * file does not wait for it, with writer threads up to queue-capacity batches are parsed ahead.
+	 */
+	public void importEmployee(Path empCsv, Runnable awaitOrganizations) {
+		importFile(empCsv, awaitOrganizations);
+
+		if (hierarchyEnabled) {
+			// From the table rather than the file, a resumed run does not read the rows committed before
+			hierarchyService.refreshManagerChains();
+		}
+	}
+
+	private void importFile(Path empCsv, Runnable awaitOrganizations) {
+
+		if (engine == ImportEngine.SWAP) {
+			// Employees are deactivated rather than removed, replacing the table would lose them
+			throw new IllegalStateException("SWAP is only supported by the organization import");
+		}
+		if (engine == ImportEngine.LOAD_DATA) {
+			loadEmployees(empCsv, awaitOrganizations);
+			return;
+		}
+		if (!seenKeys()) {
+			upsertEmployees(empCsv, NO_RUN, awaitOrganizations);
+			return;
+		}
+
+		long runId = importRunRepository.start(ImportMetrics.EMP_IMPORT);
+		try {
+			RunResult result = upsertEmployees(empCsv, runId, awaitOrganizations);
+			importRunRepository.succeeded(runId, result.rowsRead(), result.rowsWritten(), result.rowsDeactivated());
+		} catch (RuntimeException e) {
+			importRunRepository.failed(runId);
+			throw e;
+		}
+	}
+
+	private RunResult upsertEmployees(Path empCsv, long runId, Runnable awaitOrganizations) {
 
-		var importStartedAt = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP()", java.sql.Timestamp.class);
-
-		String sql = """
-			INSERT INTO employee (person_id, first_name, last_name, work_mobile, work_phone, work_title, org_id, email, manager_id, manager_code, active_employee)
-			VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-				ON DUPLICATE KEY UPDATE
-				    first_name      = VALUES(first_name),
-				    last_name       = VALUES(last_name),
-				    work_mobile     = VALUES(work_mobile),
-				    work_phone      = VALUES(work_phone),
-				    work_title      = VALUES(work_title),
-				    email           = VALUES(email),
-				    manager_id      = VALUES(manager_id),
-				    manager_code    = VALUES(manager_code),
-				    active_employee = VALUES(active_employee),
-				    updated_at      = CURRENT_TIMESTAMP
-			""";
-
-		CsvMapper csvMapper = new CsvMapper();
-		CsvSchema schema = buildEmployeeSchema();
-
-		List<Object[]> batch = new ArrayList<>(batchSize);
-		int processed = 0;
-
-		try (BufferedReader reader = Files.newBufferedReader(empCsv, StandardCharsets.UTF_8)) {
-			MappingIterator<EmployeeDTO> it = csvMapper.readerFor(EmployeeDTO.class)
-				.with(schema)
-				.readValues(reader);
-			while (it.hasNext()) {
-
-				var row = it.next();
-
-				batch.add(new Object[] {
-					ImportUtil.nullIfNullString(row.PersonId),
-					ImportUtil.nullIfNullString(row.Givenname),
-					ImportUtil.nullIfNullString(row.Lastname),
-					ImportUtil.nullIfNullString(row.WorkMobile),
-					ImportUtil.nullIfNullString(row.WorkPhone),
-					ImportUtil.nullIfNullString(row.Title),
-					ImportUtil.nullIfNullString(row.OrgId),
-					ImportUtil.nullIfNullString(row.PrimaryEMailAddress),
-					ImportUtil.nullIfNullString(row.ManagerId),
-					ImportUtil.nullIfNullString(row.ManagerCode),
-					true
-				});
-
-				if (batch.size() >= batchSize) {
-					determineUnknownOrgIds(batch);
-					jdbcTemplate.batchUpdate(sql, batch);
-					processed += batch.size();
-					batch.clear();
-					log.info("[EMP] upsert complete. Rows sent to DB: {}", processed);
+		var importStartedAt = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP()", Timestamp.class);
+		long resumeFrom = 0;
 
+		if (checkpointEnabled) {
+			ImportCheckpoint checkpoint = startOrResume(empCsv, importStartedAt);
+			resumeFrom = checkpoint.committedRows();
+			importStartedAt = checkpoint.startedAt();
+		}
+		CommitWatermark watermark = new CommitWatermark(resumeFrom);
+
+		Map<String, Long> fingerprints = deltaEnabled ? loadFingerprints() : Map.of();
+		OrganizationLookup organizations = new OrganizationLookup(awaitOrganizations);
+		Timer batchTimer = importMetrics.batchTimer(ImportMetrics.EMP_IMPORT);
+		AdaptiveBatchSizer batchSizer = batchSizerFactory.create(ImportMetrics.EMP_IMPORT, batchSize);
+		long startedAt = System.nanoTime();
+
+		ColumnBatch.Pool batches = new ColumnBatch.Pool(() -> newBatch(batchSizer.size()));
+		ColumnBatch batch = batches.acquire();
+		AtomicInteger processed = new AtomicInteger();
+		AtomicInteger unchanged = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+
+		try (CsvRowReader reader = CsvRowReader.open(csvReader, empCsv, CSV_FORMAT);
+			PoisonRowIsolator isolator = new PoisonRowIsolator("EMP",
+				new DeadLetterFile(failedDir, empCsv.getFileName().toString(), CSV_FORMAT.separator(), CSV_FORMAT.columns()), maxRejectedRows);
+			BatchPipeline<RowBatch> pipeline = new BatchPipeline<>("emp", writerThreads, queueCapacity, importThreads.threadFactory("emp-writer-"),
+				rowBatch -> importThreads.withConnection(() -> {
+					try {
+						if (runId != NO_RUN) {
+							saveSeenKeys(runId, rowBatch.rows());
+						}
+						if (rowBatch.committed()) {
+							return;
+						}
+						// Waits for the organization import on the first batch, which is not part of the batch latency
+						OrganizationIds organizationIds = organizations.get();
+						long batchStartedAt = System.nanoTime();
+						BatchResult result = writeBatch(rowBatch.rows(), rowBatch.firstRow(), organizationIds, fingerprints, isolator);
+						unchanged.addAndGet(result.unchanged());
+						rejected.addAndGet(result.rejected());
+						long elapsed = System.nanoTime() - batchStartedAt;
+						batchTimer.record(elapsed, TimeUnit.NANOSECONDS);
+						batchSizer.record(rowBatch.rows().size(), elapsed);
+						log.info("[EMP] upsert complete. Rows sent to DB: {}", processed.addAndGet(rowBatch.rows().size()));
+						checkpoint(watermark, rowBatch.firstRow(), rowBatch.rows().size());
+					} finally {
+						batches.release(rowBatch.rows());
+					}
+				}))) {
+			long rowNumber = 0;
+			while (reader.hasNext()) {
+
+				String[] values;
+				try {
+					values = reader.next();
+				} catch (CsvRowException e) {
+					// A batch never spans an unreadable row, its rows must stay contiguous for the checkpoint
+					if (!batch.isEmpty()) {
+						pipeline.submit(new RowBatch(rowNumber - batch.size(), batch, rowNumber <= resumeFrom));
+						batch = batches.acquire();
+					}
+					if (rowNumber++ >= resumeFrom) {
+						isolator.rejectUnreadable(e);
+						checkpoint(watermark, rowNumber - 1, 1);
+					}
+					continue;
+				}
+				if (rowNumber++ < resumeFrom && runId == NO_RUN) {
+					continue;
+				}
+				batch.add(values);
+
+				// Rows committed by an interrupted run are not written again, but this run must still see their keys
+				boolean committed = rowNumber <= resumeFrom;
+				if (batch.size() >= batchSizer.size() || committed && rowNumber == resumeFrom) {
+					pipeline.submit(new RowBatch(rowNumber - batch.size(), batch, committed));
+					batch = batches.acquire();
 				}
 
 			}
 			if (!batch.isEmpty()) {
-				determineUnknownOrgIds(batch);
-				jdbcTemplate.batchUpdate(sql, batch);
-				processed += batch.size();
+				pipeline.submit(new RowBatch(rowNumber - batch.size(), batch, false));
+			}
+			pipeline.finish();
+			if (isolator.rejected() > 0) {
+				importMetrics.rejected(ImportMetrics.EMP_IMPORT, isolator.rejected());
+			}
+			log.info("[EMP] final upsert complete. Rows sent to DB: {}", processed.get());
+			importMetrics.rowsRead(ImportMetrics.EMP_IMPORT, processed.get(), System.nanoTime() - startedAt);
+			if (deltaEnabled) {
+				log.info("[EMP] delta import: {} of {} rows unchanged, only touched", unchanged.get(), processed.get());
+				importMetrics.skipped(ImportMetrics.EMP_IMPORT, unchanged.get());
 			}
-			log.info("[EMP] final upsert complete. Rows sent to DB: {}", processed);
 
 		} catch (IOException e) {
 			throw new RuntimeException("Error Importing organization from:" + empCsv.getFileName().toAbsolutePath(), e);
+		} finally {
+			organizationIdCache.invalidate();
 		}
 
-		int deactivated = jdbcTemplate.update("""
-			    UPDATE employee
-			    SET active_employee = false
-			    WHERE active_employee = true
-			      AND (updated_at IS NULL OR updated_at < ?)
-			""", importStartedAt);
+		int deactivated;
+		if (runId == NO_RUN) {
+			deactivated = deactivationService.deactivateNotUpdatedSince(importStartedAt);
+		} else {
+			deactivated = deactivationService.deactivateNotSeenBy(runId);
+			importRunRepository.deleteSeenKeys(runId);
+		}
 
 		log.info("[EMP] non updated employees set to inactive: {}", deactivated);
+		importMetrics.deactivated(ImportMetrics.EMP_IMPORT, deactivated);
 
+		if (checkpointEnabled) {
+			checkpointRepository.delete(ImportMetrics.EMP_IMPORT);
+		}
+		return new RunResult(resumeFrom + processed.get(), processed.get() - unchanged.get() - rejected.get(), deactivated);
 	}
 
-	private CsvSchema buildEmployeeSchema() {
-		return CsvSchema.emptySchema()
-			.withHeader()
-			.withColumnSeparator(';');
+	private boolean seenKeys() {
+		return deactivation == DeactivationMode.SEEN_KEYS;
+	}
+
+	private void saveSeenKeys(long runId, ColumnBatch rows) {
+		List<String> personIds = new ArrayList<>(rows.size());
+		for (int row = 0; row < rows.size(); row++) {
+			String personId = rows.get(row, PERSON_ID_INDEX);
+			if (personId != null) {
+				personIds.add(personId);
+			}
+		}
+
+		importRunRepository.saveSeenKeys(runId, personIds);
 	}
 
-	private void determineUnknownOrgIds(List<Object[]> empBatch) {
-		final int orgIdIndex = 6;
-		final int emailIndex = 7;
+	/**
+	 * Resumes the checkpoint left by an interrupted run on the same file, or starts a new one. A resumed run keeps the
+	 * start time of the interrupted run, so that the deactivation sweep still counts the rows it committed as present.
+	 */
+	private ImportCheckpoint startOrResume(Path empCsv, Timestamp importStartedAt) {
+		String checksum;
+		try {
+			checksum = FileFingerprint.checksum(empCsv);
+		} catch (IOException e) {
+			throw new RuntimeException("Error Importing organization from:" + empCsv.getFileName().toAbsolutePath(), e);
+		}
+
+		var previous = checkpointRepository.findByJobName(ImportMetrics.EMP_IMPORT)
+			.filter(checkpoint -> checkpoint.fileChecksum().equals(checksum));
+		if (previous.isPresent()) {
+			log.info("[EMP] resuming interrupted import started at {}, skipping {} committed rows",
+				previous.get().startedAt(), previous.get().committedRows());
+			return previous.get();
+		}
 
-		var orgIds = empBatch.stream()
-			.map(arr -> (String) arr[orgIdIndex])
-			.filter(s -> s != null && !s.isBlank())
-			.distinct()
-			.toList();
+		checkpointRepository.start(ImportMetrics.EMP_IMPORT, checksum, importStartedAt);
+		return new ImportCheckpoint(checksum, 0, importStartedAt);
+	}
 
-		if (orgIds.isEmpty())
+	private void checkpoint(CommitWatermark watermark, long firstRow, int rows) {
+		if (!checkpointEnabled) {
 			return;
+		}
+		long committed = watermark.complete(firstRow, rows);
+		if (committed >= 0) {
+			checkpointRepository.advance(ImportMetrics.EMP_IMPORT, committed);
+		}
+	}
+
+	private void loadEmployees(Path empCsv, Runnable awaitOrganizations) {
+		try (CsvRowReader reader = CsvRowReader.open(csvReader, empCsv, CSV_FORMAT)) {
+
+			// The staged rows are merged against the organization table, so the whole load waits
+			awaitOrganizations.run();
+
+			if (deltaEnabled) {
+				// Every row is rewritten by the bulk load, stale fingerprints would make the next delta run skip real changes
+				jdbcTemplate.update("DELETE FROM employee_fingerprint");
+			}
+			bulkLoadService.loadEmployees(ImportUtil.stream(reader).map(this::toRow).iterator());
 
-		String inSql = "SELECT org_id FROM organization WHERE org_id IN (" +
-			orgIds.stream().map(x -> "?")
-				.collect(java.util.stream.Collectors.joining(",")) +
+		} catch (IOException e) {
+			throw new RuntimeException("Error Importing organization from:" + empCsv.getFileName().toAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Appends active_employee to the cleaned column values.
+	 */
+	private Object[] toRow(String[] values) {
+		Object[] row = Arrays.copyOf(values, values.length + 1, Object[].class);
+		row[values.length] = ACTIVE;
+		return row;
+	}
+
+	private static ColumnBatch newBatch(int capacity) {
+		return new ColumnBatch(CSV_FORMAT.columns().length, capacity, TITLE_INDEX, ORG_ID_INDEX, MANAGER_CODE_INDEX);
+	}
+
+	/**
+	 * Writes one batch and returns the number of rows that were unchanged since the previous import and the number of
+	 * rows the database rejected.
+	 */
+	private BatchResult writeBatch(ColumnBatch batch, long firstRow, OrganizationIds organizationIds, Map<String, Long> fingerprints,
+		PoisonRowIsolator isolator) {
+		determineUnknownOrgIds(batch, organizationIds);
+		if (!deltaEnabled) {
+			return new BatchResult(0, upsert(batch, batch.binding(ACTIVE), firstRow, isolator).cardinality());
+		}
+
+		int[] changed = new int[batch.size()];
+		int[] unchanged = new int[batch.size()];
+		long[] hashes = new long[batch.size()];
+		int changedCount = 0;
+		int unchangedCount = 0;
+
+		for (int row = 0; row < batch.size(); row++) {
+			String personId = batch.get(row, PERSON_ID_INDEX);
+			long hash = ImportUtil.rowHash(batch, row, ACTIVE);
+			Long previous = personId == null ? null : fingerprints.get(personId);
+
+			if (previous != null && previous == hash) {
+				unchanged[unchangedCount++] = row;
+			} else {
+				changed[changedCount] = row;
+				hashes[changedCount++] = hash;
+			}
+		}
+		unchanged = Arrays.copyOf(unchanged, unchangedCount);
+
+		ColumnBatch.Binding upserts = batch.binding(Arrays.copyOf(changed, changedCount), ACTIVE);
+		if (unchanged.length > 0 && touch(batch, unchanged) < unchanged.length) {
+			// Fingerprint exists but the employee row does not (or the batch holds duplicates), fall back to a full upsert
+			log.warn("[EMP] fingerprint out of sync with employee table, upserting {} unchanged rows", unchanged.length);
+			upserts = batch.binding(ACTIVE);
+			unchangedCount = 0;
+		}
+		if (upserts.getBatchSize() == 0) {
+			return new BatchResult(unchangedCount, 0);
+		}
+
+		BitSet rejected = upsert(batch, upserts, firstRow, isolator);
+
+		// A rejected row keeps its previous fingerprint, so that the next run writes it again
+		int fingerprinted = 0;
+		for (int i = 0; i < changedCount; i++) {
+			if (!rejected.get(changed[i])) {
+				changed[fingerprinted] = changed[i];
+				hashes[fingerprinted++] = hashes[i];
+			}
+		}
+		if (fingerprinted > 0) {
+			jdbcTemplate.batchUpdate(FINGERPRINT_SQL, fingerprintBinding(batch, Arrays.copyOf(changed, fingerprinted), hashes));
+		}
+		return new BatchResult(unchangedCount, rejected.cardinality());
+	}
+
+	/**
+	 * Upserts the rows and returns the batch rows the database rejected. The rejected rows are still part of the file,
+	 * with timestamp deactivation they are touched so that the sweep does not deactivate them.
+	 */
+	private BitSet upsert(ColumnBatch batch, ColumnBatch.Binding rows, long firstRow, PoisonRowIsolator isolator) {
+		BitSet rejected = isolator.write(rows, firstRow, this::upsert);
+		if (!rejected.isEmpty() && !seenKeys()) {
+			touch(batch, rejected.stream().toArray());
+		}
+		return rejected;
+	}
+
+	private void upsert(ColumnBatch.Binding rows) {
+		if (engine == ImportEngine.MULTI_ROW) {
+			multiRowUpsertWriter.write(upsertSql(), rows);
+		} else {
+			jdbcTemplate.batchUpdate(upsertSql(), rows);
+		}
+	}
+
+	private static BatchPreparedStatementSetter fingerprintBinding(ColumnBatch batch, int[] rows, long[] hashes) {
+		return new BatchPreparedStatementSetter() {
+
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setString(1, batch.get(rows[i], PERSON_ID_INDEX));
+				ps.setLong(2, hashes[i]);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return rows.length;
+			}
+		};
+	}
+
+	/**
+	 * Reactivates unchanged employees with a single statement and returns the number of matching rows, the driver
+	 * reports found rather than changed rows. With timestamp deactivation updated_at is bumped as well, so that the
+	 * sweep still sees them as present in the file. With seen keys an already active employee is not written at all.
+	 */
+	private int touch(ColumnBatch batch, int[] rows) {
+		Object[] personIds = new Object[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			personIds[i] = batch.get(rows[i], PERSON_ID_INDEX);
+		}
+
+		String assignments = seenKeys() ? "active_employee = true" : "updated_at = CURRENT_TIMESTAMP, active_employee = true";
+		String touchSql = "UPDATE employee SET " + assignments + " WHERE person_id IN (" +
+			String.join(",", Collections.nCopies(personIds.length, "?")) +
 			")";
 
-		var existing = new java.util.HashSet<>(
-			jdbcTemplate.queryForList(inSql, String.class, orgIds.toArray()));
+		return jdbcTemplate.update(touchSql, personIds);
+	}
+
+	private Map<String, Long> loadFingerprints() {
+		Map<String, Long> fingerprints = new HashMap<>();
+		jdbcTemplate.query("SELECT person_id, row_hash FROM employee_fingerprint", rs -> {
+			fingerprints.put(rs.getString(1), rs.getLong(2));
+		});
+		log.info("[EMP] delta import: loaded {} row fingerprints", fingerprints.size());
+		return fingerprints;
+	}
+
+	private String upsertSql() {
+		return seenKeys() ? UPSERT_CHANGED_SQL : UPSERT_SQL;
+	}
+
+	/**
+	 * A batch together with the number of data rows in the file before it. A committed batch was already written by an
+	 * interrupted run.
+	 */
+	private record RowBatch(long firstRow, ColumnBatch rows, boolean committed) {
+	}
+
+	private record RunResult(long rowsRead, long rowsWritten, long rowsDeactivated) {
+	}
+
+	private record BatchResult(int unchanged, int rejected) {
+	}
+
+	/**
+	 * Loads the organization ids on first use, after the organization import has been awaited.
+	 */
+	private final class OrganizationLookup {
 
-		for (Object[] row : empBatch) {
-			String orgId = (String) row[orgIdIndex];
-			if (orgId != null && !orgId.isBlank() && !existing.contains(orgId)) {
-				row[orgIdIndex] = "UNKNOWN";
+		private final Runnable awaitOrganizations;
+		private OrganizationIds organizationIds;
+
+		private OrganizationLookup(Runnable awaitOrganizations) {
+			this.awaitOrganizations = awaitOrganizations;
+		}
+
+		synchronized OrganizationIds get() {
+			if (organizationIds == null) {
+				awaitOrganizations.run();
+				organizationIds = organizationIdCache.get();
+			}
+			return organizationIds;
+		}
+	}
+
+	private void determineUnknownOrgIds(ColumnBatch empBatch, OrganizationIds organizationIds) {
+		int unknown = 0;
+
+		for (int row = 0; row < empBatch.size(); row++) {
+			String orgId = empBatch.get(row, ORG_ID_INDEX);
+			if (orgId != null && !orgId.isBlank() && !organizationIds.contains(orgId)) {
+				empBatch.set(row, ORG_ID_INDEX, "UNKNOWN");
+				unknown++;
 
 				log.warn("[EMP] org_id '{}' not found,setting to UNKNOWN for user: (email={})",
-					orgId, row[emailIndex]);
+					orgId, empBatch.get(row, EMAIL_INDEX));
 			}
 		}
+		if (unknown > 0) {
+			importMetrics.unknownOrganizations(ImportMetrics.EMP_IMPORT, unknown);
+		}
 	}
 }
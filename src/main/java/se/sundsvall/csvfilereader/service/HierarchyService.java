@@ -0,0 +1,155 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import se.sundsvall.csvfilereader.service.utility.Hierarchy;
+
+/**
+ * Keeps precomputed hierarchies next to the imported tables, so that readers do not have to walk
+ * organization.parent_org_id or employee.manager_id recursively. organization_closure holds every ancestor of every
+ * organization with its distance, the organization itself at distance 0. employee_manager_chain holds every manager
+ * above every active employee, the nearest at distance 1.
+ * <p>
+ * The new hierarchy is built in memory and compared with the stored one node by node. Only nodes whose path to the
+ * root changed are rewritten, moving an organization rewrites its subtree and nothing else. The rewrite is one
+ * transaction, readers see either the previous or the new hierarchy.
+ */
+@Service
+public class HierarchyService {
+
+	private static final Logger log = LoggerFactory.getLogger(HierarchyService.class);
+
+	private static final ClosureTable ORGANIZATION_CLOSURE = new ClosureTable("organization_closure", "descendant_org_id", "ancestor_org_id", true);
+	private static final ClosureTable MANAGER_CHAIN = new ClosureTable("employee_manager_chain", "person_id", "manager_person_id", false);
+	private static final int INSERT_BATCH_SIZE = 1000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public HierarchyService(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Rewrites the closure of the organizations whose path to the root changed.
+	 */
+	public int refreshOrganizations() {
+		Map<String, String> parents = parents("SELECT org_id, parent_org_id FROM organization");
+		int rewritten = rewrite(ORGANIZATION_CLOSURE, Hierarchy.ancestors(parents));
+		log.info("[ORG] organization closure: {} of {} organizations rewritten", rewritten, parents.size());
+		return rewritten;
+	}
+
+	/**
+	 * Rewrites the manager chain of the active employees whose line of managers changed.
+	 */
+	public int refreshManagerChains() {
+		Map<String, String> managers = parents("SELECT person_id, manager_id FROM employee WHERE active_employee = true");
+		int rewritten = rewrite(MANAGER_CHAIN, Hierarchy.ancestors(managers));
+		log.info("[EMP] manager chains: {} of {} employees rewritten", rewritten, managers.size());
+		return rewritten;
+	}
+
+	private Map<String, String> parents(String sql) {
+		Map<String, String> parents = new HashMap<>();
+		jdbcTemplate.query(sql, rs -> {
+			String parent = rs.getString(2);
+			parents.put(rs.getString(1), parent == null || parent.isBlank() ? null : parent);
+		});
+		return parents;
+	}
+
+	private int rewrite(ClosureTable table, Map<String, List<String>> paths) {
+		if (!table.selfRow()) {
+			// Only nodes with an ancestor have rows
+			paths.values().removeIf(List::isEmpty);
+		}
+		Map<String, List<String>> stored = load(table);
+		Set<String> changed = Hierarchy.changed(stored, paths);
+		if (changed.isEmpty()) {
+			return 0;
+		}
+
+		jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table.name() + " WHERE " + table.nodeColumn() + " = ?");
+				PreparedStatement insert = connection.prepareStatement(
+					"INSERT INTO " + table.name() + " (" + table.nodeColumn() + ", " + table.ancestorColumn() + ", depth) VALUES (?, ?, ?)")) {
+
+				for (String node : changed) {
+					if (stored.containsKey(node)) {
+						delete.setString(1, node);
+						delete.addBatch();
+					}
+				}
+				delete.executeBatch();
+
+				int pending = 0;
+				for (String node : changed) {
+					List<String> path = paths.get(node);
+					if (path == null) {
+						continue;
+					}
+					if (table.selfRow()) {
+						pending += add(insert, node, node, 0);
+					}
+					for (int i = 0; i < path.size(); i++) {
+						pending += add(insert, node, path.get(i), i + 1);
+					}
+					if (pending >= INSERT_BATCH_SIZE) {
+						insert.executeBatch();
+						pending = 0;
+					}
+				}
+				insert.executeBatch();
+				connection.commit();
+			} catch (SQLException | RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+			return null;
+		});
+		return changed.size();
+	}
+
+	private static int add(PreparedStatement insert, String node, String ancestor, int depth) throws SQLException {
+		insert.setString(1, node);
+		insert.setString(2, ancestor);
+		insert.setInt(3, depth);
+		insert.addBatch();
+		return 1;
+	}
+
+	/**
+	 * The stored ancestors of every node, nearest first.
+	 */
+	private Map<String, List<String>> load(ClosureTable table) {
+		Map<String, List<String>> stored = new HashMap<>();
+		jdbcTemplate.query("SELECT " + table.nodeColumn() + ", " + table.ancestorColumn() + ", depth FROM " + table.name() +
+			" ORDER BY " + table.nodeColumn() + ", depth", rs -> {
+				List<String> path = stored.computeIfAbsent(rs.getString(1), node -> new ArrayList<>());
+				if (rs.getInt(3) > 0) {
+					path.add(rs.getString(2));
+				}
+			});
+		return stored;
+	}
+
+	/**
+	 * A closure table with a row per node and ancestor, and optionally one for the node itself at depth 0.
+	 */
+	private record ClosureTable(String name, String nodeColumn, String ancestorColumn, boolean selfRow) {
+	}
+}
@@ -0,0 +1,22 @@
+package se.sundsvall.csvfilereader.service;
+
+/**
+ * How parsed rows are written to the database.
+ */
+public enum ImportEngine {
+
+	/** Batched INSERT ... ON DUPLICATE KEY UPDATE through JdbcTemplate, row by row */
+	BATCH,
+
+	/** Same upserts as BATCH, but many rows per INSERT statement, see {@link MultiRowUpsertWriter} */
+	MULTI_ROW,
+
+	/** LOAD DATA LOCAL INFILE into a staging table followed by set based merge statements */
+	LOAD_DATA,
+
+	/**
+	 * LOAD DATA LOCAL INFILE into a new copy of the table which then replaces the live table with one RENAME TABLE,
+	 * organizations only
+	 */
+	SWAP
+}
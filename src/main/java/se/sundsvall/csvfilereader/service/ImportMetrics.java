@@ -0,0 +1,140 @@
+package se.sundsvall.csvfilereader.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for the import jobs, all tagged with the job they belong to and exposed through the actuator
+ * metrics and prometheus endpoints.
+ */
+@Component
+public class ImportMetrics {
+
+	public static final String ORG_IMPORT = "org-import";
+	public static final String EMP_IMPORT = "emp-import";
+
+	private static final String PREFIX = "csvfilereader.import";
+	private static final String JOB = "job";
+
+	private final MeterRegistry meterRegistry;
+	private final Map<String, AtomicLong> rowsPerSecond = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> batchSizes = new ConcurrentHashMap<>();
+
+	public ImportMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Starts timing a job run. While the run is in progress its elapsed time is visible through
+	 * {@code csvfilereader.import.active}, which is what to alert on long before maximum-execution-time is reached.
+	 */
+	public JobRun startJob(String job) {
+		LongTaskTimer active = LongTaskTimer.builder(PREFIX + ".active")
+			.description("Import runs in progress")
+			.tag(JOB, job)
+			.register(meterRegistry);
+
+		return new JobRun(job, active.start(), Timer.start(meterRegistry));
+	}
+
+	public Timer copyTimer(String job) {
+		return Timer.builder(PREFIX + ".copy")
+			.description("Staging the source file in the incoming directory")
+			.tag(JOB, job)
+			.register(meterRegistry);
+	}
+
+	public Timer batchTimer(String job) {
+		return Timer.builder(PREFIX + ".batch")
+			.description("Writing one batch to the database")
+			.tag(JOB, job)
+			.publishPercentileHistogram()
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Records the rows read from the file in one run, together with the rate they were read and written at.
+	 */
+	public void rowsRead(String job, long rows, long elapsedNanos) {
+		counter(PREFIX + ".rows", "Rows read from the file", job).increment(rows);
+		rowsPerSecond(job).set(elapsedNanos > 0 ? rows * 1_000_000_000L / elapsedNanos : 0);
+	}
+
+	/**
+	 * The batch size currently used by the job.
+	 */
+	public void batchSize(String job, int size) {
+		batchSizes.computeIfAbsent(job, key -> meterRegistry.gauge(PREFIX + ".batch.size", Tags.of(JOB, key), new AtomicLong())).set(size);
+	}
+
+	public void unknownOrganizations(String job, long count) {
+		counter(PREFIX + ".unknown.organizations", "Employees whose organization was remapped to UNKNOWN", job).increment(count);
+	}
+
+	public void deactivated(String job, long count) {
+		counter(PREFIX + ".deactivated", "Rows set to inactive since they were missing from the file", job).increment(count);
+	}
+
+	public void skipped(String job, long count) {
+		counter(PREFIX + ".rows.skipped", "Rows that were unchanged and not rewritten", job).increment(count);
+	}
+
+	public void rejected(String job, long count) {
+		counter(PREFIX + ".rows.rejected", "Rows written to the dead letter file instead of the database", job).increment(count);
+	}
+
+	private Counter counter(String name, String description, String job) {
+		return Counter.builder(name)
+			.description(description)
+			.tag(JOB, job)
+			.register(meterRegistry);
+	}
+
+	private AtomicLong rowsPerSecond(String job) {
+		return rowsPerSecond.computeIfAbsent(job, key -> meterRegistry.gauge(PREFIX + ".rows.per.second", Tags.of(JOB, key), new AtomicLong()));
+	}
+
+	/**
+	 * One run of a job, stopped exactly once with its outcome.
+	 */
+	public final class JobRun {
+
+		private final String job;
+		private final LongTaskTimer.Sample active;
+		private final Timer.Sample duration;
+
+		private JobRun(String job, LongTaskTimer.Sample active, Timer.Sample duration) {
+			this.job = job;
+			this.active = active;
+			this.duration = duration;
+		}
+
+		public void success() {
+			stop("success");
+		}
+
+		public void skipped() {
+			stop("skipped");
+		}
+
+		public void failure() {
+			stop("failure");
+		}
+
+		private void stop(String outcome) {
+			active.stop();
+			duration.stop(Timer.builder(PREFIX + ".duration")
+				.description("Total duration of an import run")
+				.tag(JOB, job)
+				.tag("outcome", outcome)
+				.register(meterRegistry));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The threads the imports run their work on. By default these are platform threads, as before. With virtual threads
+ * enabled the jobs and their writers run on virtual threads instead, which are cheap enough to start one per task, and
+ * the number of them writing to the database at the same time is bounded by a semaphore sized to the connection pool.
+ * A virtual thread waiting for a permit parks without holding a carrier thread, where it would otherwise fail with a
+ * connection timeout once more writers than connections are waiting in the pool.
+ */
+@Component
+public class ImportThreads {
+
+	// Connections kept out of the semaphore, for the statements the two job threads run themselves
+	static final int RESERVED_CONNECTIONS = 2;
+
+	@Value("${spring.threads.virtual.enabled}")
+	private boolean virtual;
+
+	@Value("${spring.datasource.hikari.maximum-pool-size}")
+	private int maxPoolSize;
+
+	private final AtomicReference<Semaphore> connections = new AtomicReference<>();
+
+	public boolean virtual() {
+		return virtual;
+	}
+
+	/**
+	 * Threads named prefix followed by a counter, virtual ones or daemon platform threads.
+	 */
+	public ThreadFactory threadFactory(String prefix) {
+		if (virtual) {
+			return Thread.ofVirtual().name(prefix, 1).factory();
+		}
+		return Thread.ofPlatform().name(prefix, 1).daemon().factory();
+	}
+
+	/**
+	 * Runs database work, on virtual threads only once one of the connection permits is free.
+	 */
+	public void withConnection(Runnable work) {
+		if (!virtual) {
+			work.run();
+			return;
+		}
+
+		Semaphore semaphore = connections();
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a database connection", e);
+		}
+		try {
+			work.run();
+		} finally {
+			semaphore.release();
+		}
+	}
+
+	private Semaphore connections() {
+		Semaphore semaphore = connections.get();
+		if (semaphore == null) {
+			connections.compareAndSet(null, new Semaphore(Math.max(1, maxPoolSize - RESERVED_CONNECTIONS), true));
+			semaphore = connections.get();
+		}
+		return semaphore;
+	}
+}
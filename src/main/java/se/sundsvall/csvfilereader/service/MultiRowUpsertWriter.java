@@ -0,0 +1,126 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+
+/**
+ * Writes a batch as a few INSERT ... VALUES (...), (...), ... ON DUPLICATE KEY UPDATE statements instead of one
+ * statement per row. The statement for a number of rows is derived from the single row upsert and cached. Rows are
+ * split over several statements so that each stays within max_allowed_packet and the 65535 parameter limit.
+ * <p>
+ * A failing statement fails the write, {@link PoisonRowIsolator} narrows it down to the rejected rows.
+ */
+@Component
+public class MultiRowUpsertWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(MultiRowUpsertWriter.class);
+
+	private static final Pattern VALUES = Pattern.compile("(?is)^(.*?\\bVALUES\\s*)(\\([?,\\s]+\\))(.*)$");
+	private static final int MAX_PARAMETERS = 65_535;
+	private static final long DEFAULT_MAX_PACKET = 4L * 1024 * 1024;
+	// Room for the packet header and the estimate of the statement text
+	private static final long PACKET_HEADROOM = 1024;
+	private static final int MAX_CACHED_ROW_COUNTS = 64;
+
+	private final JdbcTemplate jdbcTemplate;
+	private final Map<String, Template> templates = new ConcurrentHashMap<>();
+	private volatile long maxPacket;
+
+	public MultiRowUpsertWriter(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Writes the rows of the binding with the single row upsert sql rewritten to multiple rows.
+	 */
+	public void write(String sql, ColumnBatch.Binding rows) {
+		Template template = templates.computeIfAbsent(sql, Template::parse);
+		if (template.parameters() != rows.parameterCount()) {
+			throw new IllegalArgumentException("Statement has " + template.parameters() + " parameters per row, the rows have " + rows.parameterCount());
+		}
+
+		long budget = maxPacket() - PACKET_HEADROOM - template.fixedBytes();
+		int maxRows = MAX_PARAMETERS / template.parameters();
+		int from = 0;
+		while (from < rows.getBatchSize()) {
+			int to = from;
+			long bytes = 0;
+			while (to < rows.getBatchSize() && to - from < maxRows) {
+				long rowBytes = rows.estimatedBytes(to) + template.group().length() + 2;
+				if (to > from && bytes + rowBytes > budget) {
+					break;
+				}
+				bytes += rowBytes;
+				to++;
+			}
+			execute(template, rows, from, to);
+			from = to;
+		}
+	}
+
+	private void execute(Template template, ColumnBatch.Binding rows, int from, int to) {
+		jdbcTemplate.update(template.sql(to - from), ps -> {
+			for (int i = from; i < to; i++) {
+				rows.bind(ps, i, 1 + (i - from) * template.parameters());
+			}
+		});
+	}
+
+	/**
+	 * max_allowed_packet of the server, read once. Falls back to 4 MB when the database does not report it.
+	 */
+	private long maxPacket() {
+		if (maxPacket == 0) {
+			try {
+				Long reported = jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class);
+				maxPacket = reported != null ? reported : DEFAULT_MAX_PACKET;
+			} catch (DataAccessException e) {
+				log.info("max_allowed_packet not available, assuming {} bytes", DEFAULT_MAX_PACKET);
+				maxPacket = DEFAULT_MAX_PACKET;
+			}
+		}
+		return maxPacket;
+	}
+
+	/**
+	 * A single row upsert split around its VALUES group, with the statements built from it by row count.
+	 */
+	private record Template(String prefix, String group, String suffix, int parameters, Map<Integer, String> statements) {
+
+		static Template parse(String sql) {
+			Matcher matcher = VALUES.matcher(sql);
+			if (!matcher.matches()) {
+				throw new IllegalArgumentException("No VALUES (?, ...) group in " + sql);
+			}
+			String group = matcher.group(2);
+			int parameters = (int) group.chars().filter(c -> c == '?').count();
+			return new Template(matcher.group(1), group, matcher.group(3), parameters, new ConcurrentHashMap<>());
+		}
+
+		long fixedBytes() {
+			return prefix.length() + suffix.length();
+		}
+
+		String sql(int rows) {
+			String cached = statements.get(rows);
+			if (cached != null) {
+				return cached;
+			}
+
+			String sql = prefix + String.join(", ", Collections.nCopies(rows, group)) + suffix;
+			if (statements.size() < MAX_CACHED_ROW_COUNTS) {
+				statements.put(rows, sql);
+			}
+			return sql;
+		}
+	}
+}
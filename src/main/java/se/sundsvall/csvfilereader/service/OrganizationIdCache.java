@@ -0,0 +1,74 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * All organization IDs, loaded with a single query and kept until invalidated. The employee import loads it once
+ * per run and drops it when the run ends, the organization import drops it whenever the organization table changes.
+ * Dropping it after every employee run keeps other instances' organization imports visible to the next run.
+ */
+@Component
+public class OrganizationIdCache {
+
+	private static final Logger log = LoggerFactory.getLogger(OrganizationIdCache.class);
+
+	private final JdbcTemplate jdbcTemplate;
+	private volatile OrganizationIds organizationIds;
+
+	public OrganizationIdCache(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public OrganizationIds get() {
+		OrganizationIds current = organizationIds;
+		if (current == null) {
+			synchronized (this) {
+				current = organizationIds;
+				if (current == null) {
+					current = OrganizationIds.of(jdbcTemplate.queryForList("SELECT org_id FROM organization", String.class));
+					organizationIds = current;
+					log.info("[ORG] loaded {} organization ids", current.size());
+				}
+			}
+		}
+		return current;
+	}
+
+	public void invalidate() {
+		organizationIds = null;
+	}
+
+	/**
+	 * Sorted array of IDs, looked up with binary search. Roughly a third of the memory of a HashSet.
+	 */
+	public static final class OrganizationIds {
+
+		private final String[] sortedIds;
+
+		private OrganizationIds(String[] sortedIds) {
+			this.sortedIds = sortedIds;
+		}
+
+		public static OrganizationIds of(Collection<String> ids) {
+			String[] sortedIds = ids.stream()
+				.filter(id -> id != null)
+				.distinct()
+				.sorted()
+				.toArray(String[]::new);
+			return new OrganizationIds(sortedIds);
+		}
+
+		public boolean contains(String orgId) {
+			return orgId != null && Arrays.binarySearch(sortedIds, orgId) >= 0;
+		}
+
+		public int size() {
+			return sortedIds.length;
+		}
+	}
+}
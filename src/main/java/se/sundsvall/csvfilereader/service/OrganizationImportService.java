@@ -1,37 +1,105 @@
 package se.sundsvall.csvfilereader.service;
 
-import com.fasterxml.jackson.databind.MappingIterator;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
-import java.io.BufferedReader;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import se.sundsvall.csvfilereader.db.dto.OrganizationDTO;
+import se.sundsvall.csvfilereader.file.DeadLetterFile;
+import se.sundsvall.csvfilereader.service.utility.AdaptiveBatchSizer;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.CsvFormat;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+import se.sundsvall.csvfilereader.service.utility.CsvRowException;
+import se.sundsvall.csvfilereader.service.utility.CsvRowReader;
 import se.sundsvall.csvfilereader.service.utility.ImportUtil;
 
 @Service
 public class OrganizationImportService {
+
+	public static final CsvFormat<OrganizationDTO> CSV_FORMAT = new CsvFormat<>(',',
+		new String[] {
+			"CompanyId", "OrgId", "OrgName", "ParentId", "TreeLevel"
+		},
+		OrganizationDTO.class,
+		row -> new String[] {
+			row.CompanyId, row.OrgId, row.OrgName, row.ParentId, row.TreeLevel
+		});
+
+	private static final int COMPANY_ID_INDEX = 0;
+	private static final int PARENT_ID_INDEX = 3;
+	private static final int TREE_LEVEL_INDEX = 4;
+
+	// CompanyId,OrgId,OrgName,ParentId,TreeLevel
+	private static final String[] UNKNOWN_ORGANIZATION = {
+		"1", "UNKNOWN", "Övriga personer", "13", "2"
+	};
+
 	@Value("${import.organization-batch-size}")
 	private int batchSize;
 
+	@Value("${import.csv-reader}")
+	private CsvReaderType csvReader;
+
+	@Value("${import.organization-engine}")
+	private ImportEngine engine;
+
+	@Value("${import.failed-dir}")
+	private Path failedDir;
+
+	@Value("${import.max-rejected-rows}")
+	private int maxRejectedRows;
+
+	@Value("${import.hierarchy-enabled}")
+	private boolean hierarchyEnabled;
+
 	private static final Logger log = LoggerFactory.getLogger(OrganizationImportService.class);
 
 	private final JdbcTemplate jdbcTemplate;
-
-	public OrganizationImportService(JdbcTemplate jdbcTemplate) {
+	private final BulkLoadService bulkLoadService;
+	private final OrganizationIdCache organizationIdCache;
+	private final ImportMetrics importMetrics;
+	private final BatchSizerFactory batchSizerFactory;
+	private final MultiRowUpsertWriter multiRowUpsertWriter;
+	private final HierarchyService hierarchyService;
+
+	public OrganizationImportService(JdbcTemplate jdbcTemplate, BulkLoadService bulkLoadService, OrganizationIdCache organizationIdCache,
+		ImportMetrics importMetrics, BatchSizerFactory batchSizerFactory, MultiRowUpsertWriter multiRowUpsertWriter,
+		HierarchyService hierarchyService) {
 		this.jdbcTemplate = jdbcTemplate;
+		this.bulkLoadService = bulkLoadService;
+		this.organizationIdCache = organizationIdCache;
+		this.importMetrics = importMetrics;
+		this.batchSizerFactory = batchSizerFactory;
+		this.multiRowUpsertWriter = multiRowUpsertWriter;
+		this.hierarchyService = hierarchyService;
 	}
 
 	public void importOrganizations(Path orgCsv) {
+		try {
+			if (engine == ImportEngine.LOAD_DATA || engine == ImportEngine.SWAP) {
+				loadOrganizations(orgCsv);
+			} else {
+				upsertOrganizations(orgCsv);
+			}
+			if (hierarchyEnabled) {
+				hierarchyService.refreshOrganizations();
+			}
+		} finally {
+			// Also after a failure, earlier batches may already be committed
+			organizationIdCache.invalidate();
+		}
+	}
+
+	private void upsertOrganizations(Path orgCsv) {
 
 		String sql = """
 			INSERT INTO organization (company_id, org_id, org_name, parent_org_id, tree_level)
@@ -42,48 +110,53 @@ public class OrganizationImportService {
 			  tree_level = VALUES(tree_level)
 			""";
 
-		CsvMapper csvMapper = new CsvMapper();
-		CsvSchema schema = buildOrganizationSchema();
-
-		List<Object[]> batch = new ArrayList<>(batchSize);
+		Timer batchTimer = importMetrics.batchTimer(ImportMetrics.ORG_IMPORT);
+		AdaptiveBatchSizer batchSizer = batchSizerFactory.create(ImportMetrics.ORG_IMPORT, batchSize);
+		ColumnBatch batch = new ColumnBatch(CSV_FORMAT.columns().length, batchSizer.size(), COMPANY_ID_INDEX, PARENT_ID_INDEX, TREE_LEVEL_INDEX);
 		int processed = 0;
+		long rowNumber = 0;
+		long startedAt = System.nanoTime();
+
+		try (CsvRowReader reader = CsvRowReader.open(csvReader, orgCsv, CSV_FORMAT);
+			PoisonRowIsolator isolator = new PoisonRowIsolator("ORG",
+				new DeadLetterFile(failedDir, orgCsv.getFileName().toString(), CSV_FORMAT.separator(), CSV_FORMAT.columns()), maxRejectedRows)) {
+
+			while (reader.hasNext()) {
+
+				try {
+					batch.add(reader.next());
+					rowNumber++;
+				} catch (CsvRowException e) {
+					// Rows of a batch stay contiguous, the line of a rejected row is derived from its position
+					if (!batch.isEmpty()) {
+						write(sql, batch, rowNumber - batch.size(), isolator, batchTimer, batchSizer);
+						processed += batch.size();
+						batch.clear();
+					}
+					isolator.rejectUnreadable(e);
+					rowNumber++;
+					continue;
+				}
 
-		try (BufferedReader reader = Files.newBufferedReader(orgCsv, StandardCharsets.UTF_8)) {
-
-			MappingIterator<OrganizationDTO> it = csvMapper.readerFor(OrganizationDTO.class)
-				.with(schema)
-				.readValues(reader);
-			while (it.hasNext()) {
-
-				var row = it.next();
-
-				batch.add(new Object[] {
-					ImportUtil.nullIfNullString(row.CompanyId),
-					ImportUtil.nullIfNullString(row.OrgId),
-					ImportUtil.nullIfNullString(row.OrgName),
-					ImportUtil.nullIfNullString(row.ParentId),
-					ImportUtil.nullIfNullString(row.TreeLevel),
-
-				});
-
-				if (batch.size() >= batchSize) {
-					jdbcTemplate.batchUpdate(sql, batch);
+				if (batch.size() >= batchSizer.size()) {
+					write(sql, batch, rowNumber - batch.size(), isolator, batchTimer, batchSizer);
 					processed += batch.size();
 					batch.clear();
 					log.info("[ORG] upsert complete. Rows sent to DB: {}", processed);
 				}
 			}
-			if (!batch.isEmpty()) {
-				batch.add(new Object[] {
-					// CompanyId,OrgId,OrgName,ParentId,TreeLevel
-					1, "UNKNOWN", "Övriga personer", 13, 2
-				});
+			if (!batch.isEmpty() || processed > 0) {
+				batch.add(UNKNOWN_ORGANIZATION);
 				log.info("[ORG] creating organization for UNKNOWN");
 
-				jdbcTemplate.batchUpdate(sql, batch);
+				write(sql, batch, rowNumber - batch.size() + 1, isolator, batchTimer, batchSizer);
 				processed += batch.size();
 			}
 			log.info("[ORG] final upsert complete. Rows sent to DB: {}", processed);
+			importMetrics.rowsRead(ImportMetrics.ORG_IMPORT, processed, System.nanoTime() - startedAt);
+			if (isolator.rejected() > 0) {
+				importMetrics.rejected(ImportMetrics.ORG_IMPORT, isolator.rejected());
+			}
 
 		} catch (IOException e) {
 			throw new RuntimeException("Error Importing organization from:" + orgCsv.getFileName().toAbsolutePath(), e);
@@ -91,9 +164,42 @@ public class OrganizationImportService {
 
 	}
 
-	private CsvSchema buildOrganizationSchema() {
-		return CsvSchema.emptySchema()
-			.withHeader()
-			.withColumnSeparator(',');
+	private void write(String sql, ColumnBatch batch, long firstRow, PoisonRowIsolator isolator, Timer batchTimer, AdaptiveBatchSizer batchSizer) {
+		long startedAt = System.nanoTime();
+		isolator.write(batch.binding(), firstRow, rows -> {
+			if (engine == ImportEngine.MULTI_ROW) {
+				multiRowUpsertWriter.write(sql, rows);
+			} else {
+				jdbcTemplate.batchUpdate(sql, rows);
+			}
+		});
+		long elapsed = System.nanoTime() - startedAt;
+		batchTimer.record(elapsed, TimeUnit.NANOSECONDS);
+		batchSizer.record(batch.size(), elapsed);
+	}
+
+	private void loadOrganizations(Path orgCsv) {
+		try (CsvRowReader reader = CsvRowReader.open(csvReader, orgCsv, CSV_FORMAT)) {
+
+			Iterator<Object[]> rows = Stream.concat(
+				ImportUtil.stream(reader).map(this::toRow),
+				Stream.<Object[]>of(toRow(UNKNOWN_ORGANIZATION)))
+				.iterator();
+
+			if (engine == ImportEngine.SWAP) {
+				// The UNKNOWN organization is the one row not read from the file
+				bulkLoadService.swapOrganizations(rows, 1);
+			} else {
+				bulkLoadService.loadOrganizations(rows);
+			}
+
+		} catch (IOException e) {
+			throw new RuntimeException("Error Importing organization from:" + orgCsv.getFileName().toAbsolutePath(), e);
+		}
+	}
+
+	private Object[] toRow(String[] values) {
+		return Arrays.copyOf(values, values.length, Object[].class);
 	}
+
 }
@@ -0,0 +1,89 @@
+package se.sundsvall.csvfilereader.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import se.sundsvall.csvfilereader.file.DeadLetterFile;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.CsvRowException;
+
+/**
+ * Keeps single bad rows from failing a whole import run. A batch the database rejects with a data integrity
+ * violation is split in halves until the offending rows are found, those are written to the dead letter file and the
+ * other rows are written as usual. Rows the reader cannot parse go to the same file.
+ * <p>
+ * Other failures, like a lost connection, are not about single rows and still fail the run. So does rejecting more
+ * than max-rejected-rows rows, at that point the file as a whole is suspect.
+ */
+public class PoisonRowIsolator implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(PoisonRowIsolator.class);
+
+	// Data rows are numbered from 0, the header is line 1
+	private static final int FIRST_DATA_LINE = 2;
+
+	private final String label;
+	private final DeadLetterFile deadLetters;
+	private final int maxRejectedRows;
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	public PoisonRowIsolator(String label, DeadLetterFile deadLetters, int maxRejectedRows) {
+		this.label = label;
+		this.deadLetters = deadLetters;
+		this.maxRejectedRows = maxRejectedRows;
+	}
+
+	/**
+	 * Writes the rows with the writer and returns the batch rows that were rejected. firstRow is the number of data
+	 * rows in the file before the batch.
+	 */
+	public BitSet write(ColumnBatch.Binding rows, long firstRow, Consumer<ColumnBatch.Binding> writer) {
+		BitSet rejectedRows = new BitSet();
+		bisect(rows, firstRow, writer, rejectedRows);
+		return rejectedRows;
+	}
+
+	public void rejectUnreadable(CsvRowException e) {
+		reject(e.line(), e.getMessage(), new Object[0]);
+	}
+
+	public int rejected() {
+		return rejected.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		deadLetters.close();
+	}
+
+	private void bisect(ColumnBatch.Binding rows, long firstRow, Consumer<ColumnBatch.Binding> writer, BitSet rejectedRows) {
+		try {
+			writer.accept(rows);
+		} catch (DataIntegrityViolationException e) {
+			int size = rows.getBatchSize();
+			if (size == 1) {
+				reject(firstRow + rows.rowIndex(0) + FIRST_DATA_LINE, e.getMostSpecificCause().getMessage(), rows.row(0));
+				rejectedRows.set(rows.rowIndex(0));
+				return;
+			}
+
+			bisect(rows.subset(0, size / 2), firstRow, writer, rejectedRows);
+			bisect(rows.subset(size / 2, size), firstRow, writer, rejectedRows);
+		}
+	}
+
+	private void reject(long line, String cause, Object[] values) {
+		int count = rejected.incrementAndGet();
+		if (count > maxRejectedRows) {
+			throw new IllegalStateException("[" + label + "] more than " + maxRejectedRows + " rejected rows, see " + deadLetters.path());
+		}
+
+		log.warn("[{}] line {} rejected: {}", label, line, cause);
+		deadLetters.write(line, cause, values);
+	}
+}
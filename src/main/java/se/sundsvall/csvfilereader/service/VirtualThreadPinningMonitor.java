@@ -0,0 +1,95 @@
+package se.sundsvall.csvfilereader.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the times a virtual thread blocked while pinned to its carrier thread, for example on I/O inside a
+ * synchronized block of a JDBC driver. A pinned thread holds one of the few carrier threads while it blocks, so a
+ * steady rate of pinning takes away what virtual threads were enabled for. The events are streamed from Java Flight
+ * Recorder and published as {@code csvfilereader.threads.pinned}, with the blocking frame logged at debug level.
+ * Only runs with virtual threads enabled.
+ */
+@Component
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+	static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+	@Value("${import.virtual-threads.pinned-threshold}")
+	private Duration pinnedThreshold;
+
+	private final ImportThreads importThreads;
+	private final Timer pinned;
+	private volatile RecordingStream stream;
+
+	public VirtualThreadPinningMonitor(ImportThreads importThreads, MeterRegistry meterRegistry) {
+		this.importThreads = importThreads;
+		this.pinned = Timer.builder("csvfilereader.threads.pinned")
+			.description("Virtual threads blocked while pinned to their carrier thread")
+			.register(meterRegistry);
+	}
+
+	@Override
+	public void start() {
+		if (!importThreads.virtual()) {
+			return;
+		}
+
+		RecordingStream recording = new RecordingStream();
+		recording.enable(PINNED_EVENT).withThreshold(pinnedThreshold).withStackTrace();
+		recording.onEvent(PINNED_EVENT, this::record);
+		recording.startAsync();
+		stream = recording;
+		log.info("Monitoring virtual threads pinned for more than {}", pinnedThreshold);
+	}
+
+	@Override
+	public void stop() {
+		RecordingStream recording = stream;
+		if (recording != null) {
+			recording.close();
+			stream = null;
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return stream != null;
+	}
+
+	void record(RecordedEvent event) {
+		pinned.record(event.getDuration());
+		if (log.isDebugEnabled()) {
+			log.debug("Virtual thread {} pinned for {} at {}", event.getThread() != null ? event.getThread().getJavaName() : "?",
+				event.getDuration(), blockingFrame(event));
+		}
+	}
+
+	private static String blockingFrame(RecordedEvent event) {
+		if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+			return "unknown frame";
+		}
+		// The top frames are the JDK parking the thread, the first frame outside of it is the one holding the monitor
+		RecordedFrame frame = event.getStackTrace().getFrames().stream()
+			.filter(candidate -> !isJdk(candidate))
+			.findFirst()
+			.orElse(event.getStackTrace().getFrames().getFirst());
+		return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+	}
+
+	private static boolean isJdk(RecordedFrame frame) {
+		String type = frame.getMethod().getType().getName();
+		return type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.");
+	}
+}
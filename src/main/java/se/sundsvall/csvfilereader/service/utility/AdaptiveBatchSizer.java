@@ -0,0 +1,65 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.time.Duration;
+import java.util.function.IntConsumer;
+
+/**
+ * Picks the size of the next batch from the observed write latency. The write time per row is smoothed over recent
+ * batches and the size is steered towards the number of rows that would take the target latency, changing by at most
+ * a factor two per batch and always staying within the bounds. With equal bounds the size is fixed.
+ * <p>
+ * Thread safe, batches written by parallel writers may all report to the same sizer.
+ */
+public class AdaptiveBatchSizer {
+
+	private static final double SMOOTHING = 0.3;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long targetNanos;
+	private final IntConsumer onChange;
+
+	private volatile int size;
+	private double nanosPerRow = -1;
+
+	public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, Duration targetLatency, IntConsumer onChange) {
+		if (minSize < 1 || maxSize < minSize) {
+			throw new IllegalArgumentException("Invalid batch size bounds: " + minSize + ".." + maxSize);
+		}
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.targetNanos = targetLatency.toNanos();
+		this.onChange = onChange;
+		this.size = Math.clamp(initialSize, minSize, maxSize);
+		onChange.accept(size);
+	}
+
+	public static AdaptiveBatchSizer fixed(int size, IntConsumer onChange) {
+		return new AdaptiveBatchSizer(size, Math.max(1, size), Math.max(1, size), Duration.ZERO, onChange);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Records how long writing a batch of the given number of rows took.
+	 */
+	public synchronized void record(int rows, long elapsedNanos) {
+		if (rows <= 0 || minSize == maxSize) {
+			return;
+		}
+
+		double observed = (double) elapsedNanos / rows;
+		nanosPerRow = nanosPerRow < 0 ? observed : SMOOTHING * observed + (1 - SMOOTHING) * nanosPerRow;
+
+		long wanted = Math.round(targetNanos / Math.max(nanosPerRow, 1));
+		int current = size;
+		int next = Math.clamp(wanted, Math.max(minSize, current / 2), (int) Math.min(maxSize, current * 2L));
+
+		if (next != current) {
+			size = next;
+			onChange.accept(next);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Hands batches from a single reader to a number of writer threads through a bounded queue. The reader blocks while
+ * the queue is full, and the first writer failure stops both the reader and the other writers. With a single writer
+ * the batches are written directly on the reader thread.
+ * <p>
+ * Writers should not share state besides what is thread safe, each JDBC call borrows its own pooled connection.
+ */
+public class BatchPipeline<B> implements AutoCloseable {
+
+	// How long a writer waits for a batch before it checks whether the reader is done
+	private volatile long pollMillis = 100;
+
+	// How long close waits for writers still inside a batch, for example after the reader failed
+	private volatile long closeTimeoutMillis = 30_000;
+
+	private final String label;
+	private final Consumer<B> writer;
+	private final BlockingQueue<B> queue;
+	private final ExecutorService executor;
+	private final List<Future<?>> workers = new ArrayList<>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private volatile boolean readerDone;
+
+	public BatchPipeline(String label, int writerThreads, int queueCapacity, Consumer<B> writer) {
+		this(label, writerThreads, queueCapacity, threadFactory(label), writer);
+	}
+
+	/**
+	 * A pipeline whose writers run on threads of the given factory, for example virtual threads.
+	 */
+	public BatchPipeline(String label, int writerThreads, int queueCapacity, ThreadFactory threadFactory, Consumer<B> writer) {
+		this.label = label;
+		this.writer = writer;
+
+		if (writerThreads <= 1) {
+			this.queue = null;
+			this.executor = null;
+			return;
+		}
+
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+		this.executor = Executors.newFixedThreadPool(writerThreads, threadFactory);
+		for (int i = 0; i < writerThreads; i++) {
+			workers.add(executor.submit(this::work));
+		}
+	}
+
+	/**
+	 * Queues a batch for writing, blocking while the queue is full. The batch must not be modified after submit.
+	 */
+	public void submit(B batch) {
+		if (executor == null) {
+			writer.accept(batch);
+			return;
+		}
+
+		try {
+			while (!queue.offer(batch, pollMillis, MILLISECONDS)) {
+				throwIfFailed();
+			}
+			throwIfFailed();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(label + " pipeline interrupted", e);
+		}
+	}
+
+	/**
+	 * Waits for all queued batches to be written and rethrows the first writer failure, if any.
+	 */
+	public void finish() {
+		if (executor == null) {
+			return;
+		}
+
+		readerDone = true;
+		try {
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			failure.compareAndSet(null, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(label + " pipeline interrupted", e);
+		}
+		throwIfFailed();
+	}
+
+	/**
+	 * Stops the writers and waits for those still inside a batch. Without a preceding finish, when the reader failed,
+	 * the queued batches are dropped. Fails when a writer is still running after the timeout.
+	 */
+	@Override
+	public void close() {
+		if (executor == null) {
+			return;
+		}
+
+		failure.compareAndSet(null, new CancellationException(label + " pipeline closed"));
+		queue.clear();
+		executor.shutdownNow();
+		try {
+			if (!executor.awaitTermination(closeTimeoutMillis, MILLISECONDS)) {
+				throw new IllegalStateException(label + " writers still running " + closeTimeoutMillis + " ms after close");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(label + " pipeline interrupted while closing", e);
+		}
+	}
+
+	private void work() {
+		try {
+			while (failure.get() == null) {
+				B batch = queue.poll(pollMillis, MILLISECONDS);
+				if (batch != null) {
+					writer.accept(batch);
+				} else if (readerDone && queue.isEmpty()) {
+					// The last batch may have been queued between the poll and the check
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException | Error e) {
+			failure.compareAndSet(null, e);
+			queue.clear();
+		}
+	}
+
+	private void throwIfFailed() {
+		Throwable cause = failure.get();
+		if (cause instanceof RuntimeException runtimeException) {
+			throw runtimeException;
+		}
+		if (cause != null) {
+			throw new IllegalStateException(label + " writer failed", cause);
+		}
+	}
+
+	private static ThreadFactory threadFactory(String label) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, label + "-writer-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
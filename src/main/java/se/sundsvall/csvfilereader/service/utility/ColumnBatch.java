@@ -0,0 +1,232 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+
+/**
+ * Rows of a batch stored column by column in arrays that are reused from batch to batch, and bound to the statement
+ * through a {@link BatchPreparedStatementSetter} instead of an Object[] per row. Values of the deduplicated columns
+ * are replaced by the first equal instance seen, so a batch holds one String per distinct title or org id rather
+ * than one per row.
+ * <p>
+ * A batch is filled by one thread and then handed over to the writer, it is not thread safe by itself.
+ */
+public final class ColumnBatch {
+
+	// Bounds the memory of the deduplication of a column that turns out not to be low cardinality
+	private static final int MAX_DISTINCT = 4096;
+
+	private final String[][] columns;
+	private final Map<String, String>[] distinct;
+	private int capacity;
+	private int size;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ColumnBatch(int columnCount, int capacity, int... deduplicatedColumns) {
+		this.capacity = Math.max(1, capacity);
+		this.columns = new String[columnCount][this.capacity];
+		this.distinct = new Map[columnCount];
+		for (int column : deduplicatedColumns) {
+			distinct[column] = new HashMap<>();
+		}
+	}
+
+	public void add(String... values) {
+		if (size == capacity) {
+			// The adaptive batch sizer may grow batches beyond the initial size
+			capacity *= 2;
+			for (int column = 0; column < columns.length; column++) {
+				columns[column] = Arrays.copyOf(columns[column], capacity);
+			}
+		}
+		for (int column = 0; column < columns.length; column++) {
+			columns[column][size] = deduplicate(column, values[column]);
+		}
+		size++;
+	}
+
+	public String get(int row, int column) {
+		return columns[column][row];
+	}
+
+	public void set(int row, int column, String value) {
+		columns[column][row] = value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int columnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Empties the batch for reuse. The deduplicated values are kept, the next batch most likely repeats them.
+	 */
+	public void clear() {
+		for (String[] column : columns) {
+			Arrays.fill(column, 0, size, null);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Binds every row, followed by the constants as trailing parameters.
+	 */
+	public Binding binding(Object... constants) {
+		return new Binding(null, size, constants);
+	}
+
+	/**
+	 * Binds the given rows only, followed by the constants as trailing parameters.
+	 */
+	public Binding binding(int[] rows, Object... constants) {
+		return new Binding(rows, rows.length, constants);
+	}
+
+	private String deduplicate(int column, String value) {
+		Map<String, String> values = distinct[column];
+		if (value == null || values == null) {
+			return value;
+		}
+
+		String existing = values.get(value);
+		if (existing != null) {
+			return existing;
+		}
+		if (values.size() < MAX_DISTINCT) {
+			values.put(value, value);
+		}
+		return value;
+	}
+
+	public final class Binding implements BatchPreparedStatementSetter {
+
+		private final int[] rows;
+		private final int batchSize;
+		private final Object[] constants;
+
+		private Binding(int[] rows, int batchSize, Object[] constants) {
+			this.rows = rows;
+			this.batchSize = batchSize;
+			this.constants = constants;
+		}
+
+		@Override
+		public void setValues(PreparedStatement ps, int i) throws SQLException {
+			bind(ps, i, 1);
+		}
+
+		@Override
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public int parameterCount() {
+			return columns.length + constants.length;
+		}
+
+		/**
+		 * Row of the batch the i:th statement binds.
+		 */
+		public int rowIndex(int i) {
+			return rows == null ? i : rows[i];
+		}
+
+		/**
+		 * Binds statements [from, to) of this binding only.
+		 */
+		public Binding subset(int from, int to) {
+			int[] subset = new int[to - from];
+			for (int i = 0; i < subset.length; i++) {
+				subset[i] = rowIndex(from + i);
+			}
+			return new Binding(subset, subset.length, constants);
+		}
+
+		/**
+		 * Binds the i:th statement to the parameters starting at firstParameter, for statements holding several rows.
+		 */
+		public void bind(PreparedStatement ps, int i, int firstParameter) throws SQLException {
+			int row = rowIndex(i);
+			for (int column = 0; column < columns.length; column++) {
+				String value = columns[column][row];
+				if (value == null) {
+					ps.setNull(firstParameter + column, Types.VARCHAR);
+				} else {
+					ps.setString(firstParameter + column, value);
+				}
+			}
+			for (int constant = 0; constant < constants.length; constant++) {
+				ps.setObject(firstParameter + columns.length + constant, constants[constant]);
+			}
+		}
+
+		/**
+		 * Upper bound of the bytes the values of the i:th statement take in a text protocol statement, every character
+		 * counted as three UTF-8 bytes plus quotes and separator.
+		 */
+		public long estimatedBytes(int i) {
+			int row = rowIndex(i);
+			long bytes = 0;
+			for (String[] column : columns) {
+				String value = column[row];
+				bytes += value == null ? 5 : 3L * value.length() + 3;
+			}
+			for (Object constant : constants) {
+				bytes += 3L * String.valueOf(constant).length() + 3;
+			}
+			return bytes;
+		}
+
+		/**
+		 * The parameters of the i:th statement, for logging and inspection.
+		 */
+		public Object[] row(int i) {
+			int row = rowIndex(i);
+			Object[] values = new Object[columns.length + constants.length];
+			for (int column = 0; column < columns.length; column++) {
+				values[column] = columns[column][row];
+			}
+			System.arraycopy(constants, 0, values, columns.length, constants.length);
+			return values;
+		}
+	}
+
+	/**
+	 * Hands out empty batches and takes them back once written, so that a run allocates no more batches than are in
+	 * flight at the same time. Batches may be released from another thread than the one acquiring them.
+	 */
+	public static final class Pool {
+
+		private final Supplier<ColumnBatch> factory;
+		private final Queue<ColumnBatch> free = new ConcurrentLinkedQueue<>();
+
+		public Pool(Supplier<ColumnBatch> factory) {
+			this.factory = factory;
+		}
+
+		public ColumnBatch acquire() {
+			ColumnBatch batch = free.poll();
+			return batch != null ? batch : factory.get();
+		}
+
+		public void release(ColumnBatch batch) {
+			batch.clear();
+			free.offer(batch);
+		}
+	}
+}
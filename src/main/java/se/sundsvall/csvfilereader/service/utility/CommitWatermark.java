@@ -0,0 +1,34 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.util.TreeMap;
+
+/**
+ * Tracks the number of leading rows that are committed when batches complete out of order. A batch that completes
+ * ahead of an earlier one is held until the gap before it is closed.
+ */
+public class CommitWatermark {
+
+	private final TreeMap<Long, Long> pending = new TreeMap<>();
+	private long committed;
+
+	public CommitWatermark(long committed) {
+		this.committed = committed;
+	}
+
+	/**
+	 * Marks rows [firstRow, firstRow + rows) as committed and returns the new watermark, or -1 if it did not move.
+	 */
+	public synchronized long complete(long firstRow, int rows) {
+		pending.put(firstRow, firstRow + rows);
+
+		long before = committed;
+		while (!pending.isEmpty() && pending.firstKey() <= committed) {
+			committed = Math.max(committed, pending.pollFirstEntry().getValue());
+		}
+		return committed > before ? committed : -1;
+	}
+
+	public synchronized long get() {
+		return committed;
+	}
+}
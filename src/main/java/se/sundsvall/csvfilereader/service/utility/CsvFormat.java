@@ -0,0 +1,14 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.util.function.Function;
+
+/**
+ * Layout of an export file: separator, the header columns that are imported and how the Jackson DTO maps to them.
+ *
+ * @param separator column separator
+ * @param columns   header names of the imported columns, in the order values are returned by {@link CsvRowReader}
+ * @param dtoType   DTO the Jackson reader binds rows to
+ * @param values    extracts the imported column values from a DTO, in {@code columns} order
+ */
+public record CsvFormat<T>(char separator, String[] columns, Class<T> dtoType, Function<T, String[]> values) {
+}
@@ -0,0 +1,13 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+/**
+ * CSV parser used by the imports.
+ */
+public enum CsvReaderType {
+
+	/** Jackson CsvMapper binding each row to its DTO */
+	JACKSON,
+
+	/** Memory mapped byte level tokenizer, see {@link MappedCsvRowReader} */
+	MAPPED
+}
@@ -0,0 +1,21 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+/**
+ * A single row of the file could not be read. The reader has skipped the row and can continue with the next one.
+ */
+public class CsvRowException extends RuntimeException {
+
+	private final long line;
+
+	public CsvRowException(long line, String message, Throwable cause) {
+		super(message, cause);
+		this.line = line;
+	}
+
+	/**
+	 * Line of the file the row ended on, 1 is the header.
+	 */
+	public long line() {
+		return line;
+	}
+}
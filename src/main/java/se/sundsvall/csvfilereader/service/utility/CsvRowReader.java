@@ -0,0 +1,23 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import se.sundsvall.csvfilereader.file.Compression;
+
+/**
+ * Reads the imported columns of an export file row by row. Values are returned in {@link CsvFormat#columns()} order
+ * and are already cleaned like {@link ImportUtil#nullIfNullString(String)}.
+ */
+public interface CsvRowReader extends Iterator<String[]>, Closeable {
+
+	static <T> CsvRowReader open(CsvReaderType type, Path file, CsvFormat<T> format) throws IOException {
+		// A compressed file cannot be mapped, it is streamed through Jackson
+		if (type == CsvReaderType.MAPPED && Files.size(file) <= MappedCsvRowReader.MAX_FILE_SIZE && Compression.of(file) == Compression.NONE) {
+			return new MappedCsvRowReader(file, format.separator(), format.columns());
+		}
+		return new JacksonCsvRowReader<>(file, format);
+	}
+}
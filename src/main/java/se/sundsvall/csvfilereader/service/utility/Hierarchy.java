@@ -0,0 +1,57 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Paths to the root of a tree given by the parent of each node, like organizations by ParentId or employees by
+ * ManagerId.
+ */
+public final class Hierarchy {
+
+	// Longer paths are cut, real organizations and lines of managers are far shallower
+	public static final int MAX_DEPTH = 64;
+
+	private Hierarchy() {}
+
+	/**
+	 * The ancestors of every node, nearest first. A parent that is not a node itself ends the path, a cycle ends it
+	 * before a node would repeat. A node without parent gets an empty path.
+	 */
+	public static Map<String, List<String>> ancestors(Map<String, String> parents) {
+		Map<String, List<String>> paths = HashMap.newHashMap(parents.size());
+		for (Map.Entry<String, String> entry : parents.entrySet()) {
+			String node = entry.getKey();
+			List<String> path = new ArrayList<>();
+			String parent = entry.getValue();
+			while (parent != null && !parent.equals(node) && !path.contains(parent) && path.size() < MAX_DEPTH) {
+				path.add(parent);
+				parent = parents.get(parent);
+			}
+			paths.put(node, path);
+		}
+		return paths;
+	}
+
+	/**
+	 * The nodes whose path differs between the two hierarchies, including the nodes only found in one of them.
+	 */
+	public static Set<String> changed(Map<String, List<String>> previous, Map<String, List<String>> current) {
+		Set<String> changed = new HashSet<>();
+		previous.forEach((node, path) -> {
+			if (!path.equals(current.get(node))) {
+				changed.add(node);
+			}
+		});
+		current.forEach((node, path) -> {
+			if (!previous.containsKey(node)) {
+				changed.add(node);
+			}
+		});
+		return changed;
+	}
+}
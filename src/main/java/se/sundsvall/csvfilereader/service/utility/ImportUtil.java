@@ -1,7 +1,21 @@
 package se.sundsvall.csvfilereader.service.utility;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public class ImportUtil {
 
+	private static final byte NULL_MARKER = 0;
+	private static final byte VALUE_MARKER = 1;
+	private static final byte FIELD_SEPARATOR = 0x1F;
+
 	public static String nullIfNullString(String string) {
 		if (string == null)
 			return null;
@@ -10,4 +24,55 @@ public class ImportUtil {
 			return null;
 		return trimmed;
 	}
+
+	/**
+	 * Content fingerprint of a normalized row, used to detect rows that are unchanged since the previous import.
+	 * The first 64 bits of a SHA-256 digest are kept, null and empty values hash differently.
+	 */
+	public static long rowHash(Object[] row) {
+		MessageDigest digest = sha256();
+		for (Object value : row) {
+			update(digest, value);
+		}
+		return ByteBuffer.wrap(digest.digest()).getLong();
+	}
+
+	/**
+	 * Same fingerprint as {@link #rowHash(Object[])} of the row followed by the constants, without copying the row.
+	 */
+	public static long rowHash(ColumnBatch batch, int row, Object... constants) {
+		MessageDigest digest = sha256();
+		for (int column = 0; column < batch.columnCount(); column++) {
+			update(digest, batch.get(row, column));
+		}
+		for (Object constant : constants) {
+			update(digest, constant);
+		}
+		return ByteBuffer.wrap(digest.digest()).getLong();
+	}
+
+	/**
+	 * Lazy, sequential stream over the remaining elements of an iterator.
+	 */
+	public static <T> Stream<T> stream(Iterator<T> iterator) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+	}
+
+	private static void update(MessageDigest digest, Object value) {
+		if (value == null) {
+			digest.update(NULL_MARKER);
+		} else {
+			digest.update(VALUE_MARKER);
+			digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update(FIELD_SEPARATOR);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
 }
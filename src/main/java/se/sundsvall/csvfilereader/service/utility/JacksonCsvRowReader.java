@@ -0,0 +1,106 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import se.sundsvall.csvfilereader.file.Compression;
+
+/**
+ * Reads rows through Jackson's CsvMapper into the format's DTO and extracts the imported columns from it. Compressed
+ * files are decompressed while reading.
+ */
+public class JacksonCsvRowReader<T> implements CsvRowReader {
+
+	private final BufferedReader reader;
+	private final MappingIterator<T> iterator;
+	private final CsvFormat<T> format;
+
+	// A parse failure, e.g. a missing closing quote, leaves the parser at the end of the input
+	private boolean broken;
+	private CsvRowException nextFailure;
+
+	public JacksonCsvRowReader(Path file, CsvFormat<T> format) throws IOException {
+		this.format = format;
+		this.reader = new BufferedReader(new InputStreamReader(Compression.open(file), StandardCharsets.UTF_8.newDecoder()));
+		try {
+			this.iterator = new CsvMapper().readerFor(format.dtoType())
+				.with(CsvSchema.emptySchema()
+					.withHeader()
+					.withColumnSeparator(format.separator()))
+				.readValues(reader);
+		} catch (IOException | RuntimeException e) {
+			reader.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextFailure != null) {
+			return true;
+		}
+		if (broken) {
+			return false;
+		}
+		try {
+			return iterator.hasNext();
+		} catch (RuntimeException e) {
+			nextFailure = parseFailure(e);
+			return true;
+		}
+	}
+
+	/**
+	 * Rows Jackson cannot map, e.g. with more fields than the header, are reported as {@link CsvRowException}. The
+	 * iterator skips the rest of such a row, so reading can go on. A row Jackson cannot parse, like one with an
+	 * unterminated quote, is reported the same way and ends the file, the quote has consumed the rest of it. Malformed
+	 * UTF-8 fails the whole file.
+	 */
+	@Override
+	public String[] next() {
+		if (nextFailure != null) {
+			CsvRowException failure = nextFailure;
+			nextFailure = null;
+			throw failure;
+		}
+
+		T row;
+		try {
+			row = iterator.next();
+		} catch (RuntimeJsonMappingException e) {
+			throw new CsvRowException(iterator.getCurrentLocation().getLineNr(), e.getMessage(), e);
+		} catch (RuntimeException e) {
+			throw parseFailure(e);
+		}
+
+		String[] values = format.values().apply(row);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = ImportUtil.nullIfNullString(values[i]);
+		}
+		return values;
+	}
+
+	private CsvRowException parseFailure(RuntimeException e) {
+		if (!(e.getCause() instanceof JsonParseException parseException)) {
+			throw e;
+		}
+		broken = true;
+		return new CsvRowException(iterator.getCurrentLocation().getLineNr(), parseException.getMessage(), parseException);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			iterator.close();
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * CSV tokenizer working directly on the memory mapped bytes of a UTF-8 file. Separators, quotes and line breaks are
+ * found on raw bytes and only the imported columns are decoded to strings. Trimming and NULL detection are done on
+ * the bytes, so empty and NULL values never become strings.
+ * <p>
+ * Follows the Jackson reader for the exports: a header row, optional double quotes with "" as escaped quote, LF or CRLF
+ * line breaks. Unlike Jackson, a UTF-8 BOM and blank lines are skipped, and columns not in the header read as null.
+ * Like Jackson, a row with more fields than the header (besides one empty trailing field), an unterminated quote or
+ * malformed UTF-8 in an imported column is reported as {@link CsvRowException} by {@link #next()}, and reading goes on
+ * with the next row.
+ */
+public class MappedCsvRowReader implements CsvRowReader {
+
+	static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+	private static final byte QUOTE = '"';
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+	private static final int QUOTED = 1;
+	private static final int ESCAPED_QUOTES = 2;
+
+	private final ByteBuffer buffer;
+	private final int limit;
+	private final byte separator;
+	private final int columnCount;
+	private final int[] columnByField;
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private int[] fieldFlags = new int[16];
+	private byte[] scratch = new byte[256];
+
+	private int position;
+	private int rowEnd;
+	private String[] nextRow;
+	private CsvRowException nextFailure;
+
+	// Line breaks counted up to lineOffset, only advanced when a row fails
+	private int lineOffset;
+	private long lineBreaks;
+
+	public MappedCsvRowReader(Path file, char separator, String[] columns) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, READ)) {
+			long size = channel.size();
+			if (size > MAX_FILE_SIZE) {
+				throw new IOException("File too large to map: " + file.toAbsolutePath());
+			}
+			// The mapping stays valid after the channel is closed
+			this.buffer = channel.map(READ_ONLY, 0, size);
+		}
+		this.limit = buffer.limit();
+		this.separator = (byte) separator;
+		this.columnCount = columns.length;
+
+		skipByteOrderMark();
+		try {
+			this.columnByField = readHeader(columns);
+		} catch (CsvRowException e) {
+			throw new IOException("Unreadable header in " + file.toAbsolutePath() + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextRow == null && nextFailure == null) {
+			try {
+				nextRow = readRow();
+			} catch (CsvRowException e) {
+				nextFailure = e;
+			}
+		}
+		return nextRow != null || nextFailure != null;
+	}
+
+	@Override
+	public String[] next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (nextFailure != null) {
+			CsvRowException failure = nextFailure;
+			nextFailure = null;
+			throw failure;
+		}
+		String[] row = nextRow;
+		nextRow = null;
+		return row;
+	}
+
+	@Override
+	public void close() {
+		// Nothing to release, the mapping is unmapped when garbage collected
+	}
+
+	private void skipByteOrderMark() {
+		if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+			position = 3;
+		}
+	}
+
+	private int[] readHeader(String[] columns) {
+		int fieldCount = tokenize();
+		int[] columnByField = new int[fieldCount];
+		Arrays.fill(columnByField, -1);
+
+		boolean[] found = new boolean[columns.length];
+		for (int field = 0; field < fieldCount; field++) {
+			String name = decode(field, false);
+			for (int column = 0; column < columns.length; column++) {
+				if (!found[column] && columns[column].equals(name)) {
+					columnByField[field] = column;
+					found[column] = true;
+					break;
+				}
+			}
+		}
+		return columnByField;
+	}
+
+	private String[] readRow() {
+		int fieldCount = tokenize();
+		if (fieldCount == 0) {
+			return null;
+		}
+
+		if (fieldCount > columnByField.length && !(fieldCount == columnByField.length + 1 && isEmpty(fieldCount - 1))) {
+			throw new CsvRowException(lineAt(rowEnd), "Too many entries: expected at most " + columnByField.length + ", got " + fieldCount, null);
+		}
+
+		String[] row = new String[columnCount];
+		for (int field = 0; field < columnByField.length && field < fieldCount; field++) {
+			int column = columnByField[field];
+			if (column >= 0) {
+				row[column] = decode(field, true);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Finds the field boundaries of the next non blank record and moves past it. Returns the number of fields, 0 at end
+	 * of file. An unterminated quote consumes the rest of the file.
+	 */
+	private int tokenize() {
+		int p = position;
+		while (p < limit && (buffer.get(p) == LF || buffer.get(p) == CR)) {
+			p++;
+		}
+		if (p >= limit) {
+			position = p;
+			return 0;
+		}
+
+		int field = 0;
+		while (true) {
+			ensureFieldCapacity(field);
+			if (p < limit && buffer.get(p) == QUOTE) {
+				int start = ++p;
+				int flags = QUOTED;
+				while (true) {
+					if (p >= limit) {
+						position = limit;
+						rowEnd = limit;
+						throw new CsvRowException(lineAt(limit), "Missing closing quote for value starting at byte offset " + (start - 1), null);
+					}
+					if (buffer.get(p) == QUOTE) {
+						if (p + 1 < limit && buffer.get(p + 1) == QUOTE) {
+							flags |= ESCAPED_QUOTES;
+							p += 2;
+							continue;
+						}
+						break;
+					}
+					p++;
+				}
+				fieldStarts[field] = start;
+				fieldEnds[field] = p++;
+				fieldFlags[field] = flags;
+				p = skipToDelimiter(p);
+			} else {
+				fieldStarts[field] = p;
+				p = skipToDelimiter(p);
+				fieldEnds[field] = p;
+				fieldFlags[field] = 0;
+			}
+			field++;
+
+			rowEnd = p;
+			if (p >= limit) {
+				break;
+			}
+			byte delimiter = buffer.get(p++);
+			if (delimiter != separator) {
+				if (delimiter == CR && p < limit && buffer.get(p) == LF) {
+					p++;
+				}
+				break;
+			}
+		}
+		position = p;
+		return field;
+	}
+
+	private int skipToDelimiter(int p) {
+		while (p < limit) {
+			byte b = buffer.get(p);
+			if (b == separator || b == LF || b == CR) {
+				break;
+			}
+			p++;
+		}
+		return p;
+	}
+
+	private String decode(int field, boolean nullIfNullString) {
+		int length = copyToScratch(field);
+		boolean ascii = true;
+		for (int i = 0; i < length && ascii; i++) {
+			ascii = scratch[i] >= 0;
+		}
+
+		int start = 0;
+		int end = length;
+		while (start < end && (scratch[start] & 0xFF) <= ' ') {
+			start++;
+		}
+		while (end > start && (scratch[end - 1] & 0xFF) <= ' ') {
+			end--;
+		}
+
+		if (nullIfNullString && (start == end || isNullString(start, end))) {
+			return null;
+		}
+		if (ascii) {
+			return new String(scratch, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+		try {
+			// Rejects malformed input like the decoder of the Jackson reader, new String would replace it
+			return decoder.decode(ByteBuffer.wrap(scratch, start, end - start)).toString();
+		} catch (CharacterCodingException e) {
+			throw new CsvRowException(lineAt(rowEnd), "Malformed UTF-8 in field " + (field + 1), e);
+		}
+	}
+
+	private boolean isEmpty(int field) {
+		return fieldFlags[field] == 0 && fieldStarts[field] == fieldEnds[field];
+	}
+
+	/**
+	 * Line of the byte offset, 1 is the first line. Offsets must not decrease between calls.
+	 */
+	private long lineAt(int offset) {
+		for (; lineOffset < offset; lineOffset++) {
+			byte b = buffer.get(lineOffset);
+			if (b == LF || b == CR && (lineOffset + 1 >= limit || buffer.get(lineOffset + 1) != LF)) {
+				lineBreaks++;
+			}
+		}
+		return lineBreaks + 1;
+	}
+
+	private int copyToScratch(int field) {
+		int start = fieldStarts[field];
+		int length = fieldEnds[field] - start;
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+
+		if ((fieldFlags[field] & ESCAPED_QUOTES) == 0) {
+			buffer.get(start, scratch, 0, length);
+			return length;
+		}
+
+		int count = 0;
+		for (int p = start; p < start + length; p++) {
+			byte b = buffer.get(p);
+			scratch[count++] = b;
+			if (b == QUOTE) {
+				// Second quote of an escaped pair
+				p++;
+			}
+		}
+		return count;
+	}
+
+	private boolean isNullString(int start, int end) {
+		return end - start == 4
+			&& (scratch[start] | 0x20) == 'n'
+			&& (scratch[start + 1] | 0x20) == 'u'
+			&& (scratch[start + 2] | 0x20) == 'l'
+			&& (scratch[start + 3] | 0x20) == 'l';
+	}
+
+	private void ensureFieldCapacity(int field) {
+		if (field >= fieldStarts.length) {
+			int capacity = fieldStarts.length * 2;
+			fieldStarts = Arrays.copyOf(fieldStarts, capacity);
+			fieldEnds = Arrays.copyOf(fieldEnds, capacity);
+			fieldFlags = Arrays.copyOf(fieldFlags, capacity);
+		}
+	}
+}
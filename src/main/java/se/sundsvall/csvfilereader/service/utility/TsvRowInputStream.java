@@ -0,0 +1,99 @@
+package se.sundsvall.csvfilereader.service.utility;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Encodes rows on demand in the default LOAD DATA INFILE format: tab separated fields, newline terminated lines,
+ * backslash escapes and \N for null. Only one encoded row is held in memory at a time.
+ */
+public class TsvRowInputStream extends InputStream {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final Iterator<Object[]> rows;
+	private final StringBuilder line = new StringBuilder(256);
+	private byte[] buffer = EMPTY;
+	private int position;
+	private long rowCount;
+
+	public TsvRowInputStream(Iterator<Object[]> rows) {
+		this.rows = rows;
+	}
+
+	@Override
+	public int read() {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int count = Math.min(length, buffer.length - position);
+		System.arraycopy(buffer, position, bytes, offset, count);
+		position += count;
+		return count;
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	private boolean fill() {
+		while (position >= buffer.length) {
+			if (!rows.hasNext()) {
+				return false;
+			}
+			encode(rows.next());
+		}
+		return true;
+	}
+
+	private void encode(Object[] row) {
+		line.setLength(0);
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			appendValue(row[i]);
+		}
+		line.append('\n');
+
+		buffer = line.toString().getBytes(StandardCharsets.UTF_8);
+		position = 0;
+		rowCount++;
+	}
+
+	private void appendValue(Object value) {
+		if (value == null) {
+			line.append("\\N");
+			return;
+		}
+		if (value instanceof Boolean bool) {
+			line.append(bool ? '1' : '0');
+			return;
+		}
+
+		String string = value.toString();
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch (c) {
+				case '\\' -> line.append("\\\\");
+				case '\t' -> line.append("\\t");
+				case '\n' -> line.append("\\n");
+				case '\r' -> line.append("\\r");
+				case '\0' -> line.append("\\0");
+				default -> line.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,7 @@
+create table employee_fingerprint
+(
+    person_id  varchar(255) not null,
+    row_hash   bigint       not null,
+    updated_at timestamp(3) not null default current_timestamp(3) on update current_timestamp(3),
+    primary key (person_id)
+);
@@ -0,0 +1,9 @@
+create table processed_file
+(
+    job_name      varchar(64)  not null,
+    file_size     bigint       not null,
+    last_modified timestamp(3) not null,
+    checksum      char(64)     not null,
+    processed_at  timestamp(3) not null default current_timestamp(3),
+    primary key (job_name)
+);
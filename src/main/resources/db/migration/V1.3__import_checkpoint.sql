@@ -0,0 +1,9 @@
+create table import_checkpoint
+(
+    job_name       varchar(64)  not null,
+    file_checksum  char(64)     not null,
+    committed_rows bigint       not null default 0,
+    started_at     timestamp(3) not null,
+    updated_at     timestamp(3) not null default current_timestamp(3) on update current_timestamp(3),
+    primary key (job_name)
+);
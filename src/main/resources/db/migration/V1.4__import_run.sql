@@ -0,0 +1,21 @@
+create table import_run
+(
+    id               bigint       not null auto_increment,
+    job_name         varchar(64)  not null,
+    status           varchar(16)  not null,
+    started_at       timestamp(3) not null default current_timestamp(3),
+    finished_at      timestamp(3) null,
+    duration_ms      bigint       null,
+    rows_read        bigint       null,
+    rows_written     bigint       null,
+    rows_deactivated bigint       null,
+    primary key (id),
+    index import_run_job_started (job_name, started_at)
+);
+
+create table import_run_seen_key
+(
+    run_id    bigint       not null,
+    person_id varchar(255) not null,
+    primary key (run_id, person_id)
+);
@@ -0,0 +1,17 @@
+create table organization_closure
+(
+    ancestor_org_id   varchar(255) not null,
+    descendant_org_id varchar(255) not null,
+    depth             int          not null,
+    primary key (ancestor_org_id, descendant_org_id),
+    index organization_closure_descendant (descendant_org_id, depth)
+);
+
+create table employee_manager_chain
+(
+    person_id         varchar(255) not null,
+    manager_person_id varchar(255) not null,
+    depth             int          not null,
+    primary key (person_id, depth),
+    index employee_manager_chain_manager (manager_person_id)
+);
@@ -0,0 +1,12 @@
+create table change_log
+(
+    id          bigint       not null auto_increment,
+    job_name    varchar(64)  not null,
+    file_name   varchar(255) not null,
+    inserted    int          not null,
+    updated     int          not null,
+    deactivated int          not null,
+    deleted     int          not null,
+    created_at  timestamp(3) not null default current_timestamp(3),
+    primary key (id)
+);
@@ -0,0 +1,49 @@
+package se.sundsvall.cvsfilereader.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import se.sundsvall.csvfilereader.api.DirectoryResource;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.service.DirectoryIndex;
+import se.sundsvall.csvfilereader.service.DirectoryService;
+
+@ExtendWith(MockitoExtension.class)
+class DirectoryResourceTest {
+
+	@Mock
+	DirectoryService directoryService;
+
+	DirectoryResource resource;
+
+	@BeforeEach
+	void setup() {
+		resource = new DirectoryResource(directoryService);
+	}
+
+	@Test
+	void getOrganization() {
+		Organization organization = new Organization(1, "A", "Org A", null, 1);
+		when(directoryService.index()).thenReturn(Optional.of(DirectoryIndex.of(List.of(organization), List.of())));
+
+		assertEquals(organization, resource.getOrganization("A").getBody());
+		assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class, () -> resource.getEmployee("1")).getStatusCode());
+	}
+
+	@Test
+	void notLoadedYet() {
+		when(directoryService.index()).thenReturn(Optional.empty());
+
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, assertThrows(ResponseStatusException.class, () -> resource.getSubtree("A")).getStatusCode());
+	}
+}
@@ -0,0 +1,80 @@
+package se.sundsvall.cvsfilereader.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.file.ChangeLogFile;
+import se.sundsvall.csvfilereader.file.ChangeLogFile.Change;
+
+public class ChangeLogFileTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writesOneObjectPerLineTest() throws IOException {
+		Path outbox = tempDir.resolve("outbox");
+		ChangeLogFile file = new ChangeLogFile(outbox, "emp-import");
+
+		file.write("employee", "10", Change.INSERTED);
+		file.write("employee", "2\"0", Change.DEACTIVATED);
+		assertFalse(Files.exists(file.path()));
+		file.commit();
+		file.close();
+
+		assertTrue(file.path().getFileName().toString().matches("emp-import-\\d{8}-\\d{6}\\.jsonl"));
+		assertEquals(List.of(
+			"{\"entity\":\"employee\",\"id\":\"10\",\"change\":\"INSERTED\"}",
+			"{\"entity\":\"employee\",\"id\":\"2\\\"0\",\"change\":\"DEACTIVATED\"}"), Files.readAllLines(file.path()));
+		assertEquals(List.of(file.path()), Files.list(outbox).toList());
+		assertEquals(1, file.count(Change.DEACTIVATED));
+		assertEquals(0, file.count(Change.UPDATED));
+	}
+
+	@Test
+	void keepsFilesOfRunsWithinTheSameSecondTest() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		for (String id : List.of("1", "2", "3")) {
+			ChangeLogFile file = new ChangeLogFile(tempDir, "org-import");
+			file.write("organization", id, Change.INSERTED);
+			file.commit();
+			paths.add(file.path());
+		}
+
+		assertEquals(3, paths.stream().distinct().count());
+		assertTrue(paths.stream().allMatch(path -> path.getFileName().toString().matches("org-import-\\d{8}-\\d{6}(_\\d{2})?\\.jsonl")));
+		// Sorted by name the files are in the order of the runs
+		assertEquals(paths, Files.list(tempDir).sorted().toList());
+	}
+
+	@Test
+	void createsNoFileWithoutChangesTest() throws IOException {
+		ChangeLogFile file = new ChangeLogFile(tempDir, "org-import");
+
+		file.commit();
+		file.close();
+
+		assertFalse(file.hasChanges());
+		assertFalse(Files.exists(file.path()));
+	}
+
+	@Test
+	void discardsFileClosedWithoutCommitTest() throws IOException {
+		ChangeLogFile file = new ChangeLogFile(tempDir, "emp-import");
+
+		file.write("employee", "10", Change.INSERTED);
+		file.close();
+
+		assertTrue(file.hasChanges());
+		assertFalse(Files.exists(file.path()));
+		assertEquals(List.of(), Files.list(tempDir).toList());
+	}
+}
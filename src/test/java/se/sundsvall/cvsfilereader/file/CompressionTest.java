@@ -0,0 +1,57 @@
+package se.sundsvall.cvsfilereader.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.file.Compression;
+
+public class CompressionTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void detectsCompressionFromMagicBytesTest() throws IOException {
+		Path plain = tempDir.resolve("plain.gz");
+		Files.writeString(plain, "CompanyId,OrgId\n");
+		Path gzip = tempDir.resolve("gzip.csv");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+			out.write("CompanyId,OrgId\n".getBytes());
+		}
+		Path zstd = tempDir.resolve("zstd.csv");
+		Files.write(zstd, new byte[] {
+			0x28, (byte) 0xB5, 0x2F, (byte) 0xFD, 0x04
+		});
+		Path empty = tempDir.resolve("empty.csv");
+		Files.createFile(empty);
+
+		assertEquals(Compression.NONE, Compression.of(plain));
+		assertEquals(Compression.GZIP, Compression.of(gzip));
+		assertEquals(Compression.ZSTD, Compression.of(zstd));
+		assertEquals(Compression.NONE, Compression.of(empty));
+	}
+
+	@Test
+	void findsCompressedFileWhenPlainIsMissingTest() throws IOException {
+		assertEquals(tempDir.resolve("OrgExport.csv"), Compression.find(tempDir, "OrgExport.csv"));
+
+		Files.writeString(tempDir.resolve("OrgExport.csv.zst"), "");
+		assertEquals(tempDir.resolve("OrgExport.csv.zst"), Compression.find(tempDir, "OrgExport.csv"));
+
+		Files.writeString(tempDir.resolve("OrgExport.csv"), "");
+		assertEquals(tempDir.resolve("OrgExport.csv"), Compression.find(tempDir, "OrgExport.csv"));
+	}
+
+	@Test
+	void baseNameTest() {
+		assertEquals("OrgExport.csv", Compression.baseName("OrgExport.csv.gz"));
+		assertEquals("OrgExport.csv", Compression.baseName("OrgExport.csv.zst"));
+		assertEquals("OrgExport.csv", Compression.baseName("OrgExport.csv"));
+	}
+}
@@ -0,0 +1,44 @@
+package se.sundsvall.cvsfilereader.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.file.DeadLetterFile;
+
+public class DeadLetterFileTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void writesRowsWithLineAndCauseTest() throws IOException {
+		DeadLetterFile file = new DeadLetterFile(tempDir.resolve("failed"), "OrgExport.csv", ',', "CompanyId", "OrgId", "OrgName");
+
+		file.write(5, "Data too long", "1", "A", "Org, \"quoted\"", true);
+		file.write(7, "Too many entries");
+		file.close();
+
+		assertTrue(file.path().getFileName().toString().matches("OrgExport-rejected-\\d{8}-\\d{6}\\.csv"));
+		assertEquals(List.of(
+			"line,cause,CompanyId,OrgId,OrgName",
+			"5,Data too long,1,A,\"Org, \"\"quoted\"\"\"",
+			"7,Too many entries,,,"), Files.readAllLines(file.path()));
+		assertEquals(2, file.rows());
+	}
+
+	@Test
+	void createsNoFileWithoutRejectedRowsTest() throws IOException {
+		DeadLetterFile file = new DeadLetterFile(tempDir, "EmpExport.csv", ';', "PersonId");
+
+		file.close();
+
+		assertFalse(Files.exists(file.path()));
+	}
+}
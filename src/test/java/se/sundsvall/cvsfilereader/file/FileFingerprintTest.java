@@ -0,0 +1,62 @@
+package se.sundsvall.cvsfilereader.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
+
+public class FileFingerprintTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void checksumTest() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "abc");
+
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", FileFingerprint.checksum(file));
+	}
+
+	@Test
+	void matchesWhenContentUnchangedButTouchedTest() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "string");
+		FileFingerprint fingerprint = FileFingerprint.of(file);
+
+		Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+
+		assertTrue(fingerprint.matches(file));
+	}
+
+	@Test
+	void doesNotMatchWhenContentChangedTest() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "string");
+		FileFingerprint fingerprint = FileFingerprint.of(file);
+
+		Files.writeString(file, "strinG");
+		Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+
+		assertFalse(fingerprint.matches(file));
+	}
+
+	@Test
+	void doesNotMatchWhenSizeChangedTest() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "string");
+		FileFingerprint fingerprint = FileFingerprint.of(file);
+
+		Files.writeString(file, "longer string");
+
+		assertFalse(fingerprint.matches(file));
+	}
+}
@@ -1,13 +1,27 @@
 package se.sundsvall.cvsfilereader.file;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.file.Compression;
+import se.sundsvall.csvfilereader.file.CsvFileReport;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
 import se.sundsvall.csvfilereader.file.FileManager;
+import se.sundsvall.csvfilereader.file.StagingMode;
 
 public class FileManagerTest {
 
@@ -17,83 +31,136 @@ public class FileManagerTest {
 	Path tempDir;
 
 	@Test
-	void testMoveOrganizationFiles() throws IOException {
+	void stageLinksSourceWithoutCopyingTest() throws IOException {
 		// Arrange
-		Path sourceDir = tempDir.resolve("incoming");
-		Path targetDir = tempDir.resolve("processed");
-		Files.createDirectories(sourceDir);
-		String content = "string";
-
-		Path orgCsv = sourceDir.resolve("OrgExport.csv");
-		Files.writeString(orgCsv, content);
+		Path source = tempDir.resolve("OrgExport.csv");
+		Files.writeString(source, "string");
+		Path incomingDir = tempDir.resolve("incoming");
 		// Act
-		fileManager.moveFile(orgCsv, targetDir);
+		Path staged = fileManager.stage(source, incomingDir, StagingMode.LINK);
 		// Assert
-		Path moved = targetDir.resolve("OrgExport.csv");
-		assertTrue(Files.exists(moved), "expected file to exist");
-		assertFalse(Files.exists(orgCsv), "expected file to be moved");
-
-		assertEquals(content, Files.readString(moved));
+		assertEquals(incomingDir.resolve("OrgExport.csv"), staged);
+		assertTrue(Files.isSameFile(source, staged), "expected a hard link to the source");
+		try (var files = Files.list(incomingDir)) {
+			assertEquals(List.of(staged), files.toList());
+		}
 	}
 
 	@Test
-	void testMoveEmployeeFiles() throws IOException {
+	void stageCopiesSourceTest() throws IOException {
 		// Arrange
-		Path sourceDir = tempDir.resolve("incoming");
-		Path targetDir = tempDir.resolve("processed");
-		Files.createDirectories(sourceDir);
-		Files.createDirectories(targetDir);
-
-		String content = "string";
-
-		Path empCsv = sourceDir.resolve("EmpExport.csv");
-		Files.writeString(empCsv, content);
+		Path source = tempDir.resolve("EmpExport.csv");
+		Files.writeString(source, "string");
+		Path incomingDir = tempDir.resolve("incoming");
+		Files.createDirectories(incomingDir);
+		Files.writeString(incomingDir.resolve("EmpExport.csv"), "previous");
 		// Act
-		fileManager.moveFile(empCsv, targetDir);
+		Path staged = fileManager.stage(source, incomingDir, StagingMode.COPY);
 		// Assert
-		Path moved = targetDir.resolve("EmpExport.csv");
-		assertTrue(Files.exists(moved), "expected file to exist");
-		assertFalse(Files.exists(empCsv), "expected file to be moved");
-
-		assertEquals(content, Files.readString(moved));
-
+		assertFalse(Files.isSameFile(source, staged), "expected a copy of the source");
+		assertEquals("string", Files.readString(staged));
 	}
 
 	@Test
-	void testDeletePreviouslyProcessedFile() throws IOException {
+	void stageCopyKeepsModificationTimeOfSourceTest() throws IOException {
 		// Arrange
-		Path processed = tempDir.resolve("processed.csv");
-		Files.writeString(processed, "string");
-		assertTrue(Files.exists(processed), "not deleted");
+		Path source = tempDir.resolve("EmpExport.csv");
+		Files.writeString(source, "string");
+		FileTime lastModified = FileTime.from(Instant.parse("2024-01-01T02:00:00Z"));
+		Files.setLastModifiedTime(source, lastModified);
 		// Act
-		fileManager.deletePreviouslyProcessedFile(processed);
+		Path staged = fileManager.stage(source, tempDir.resolve("incoming"), StagingMode.COPY);
 		// Assert
-		assertFalse(Files.exists(processed), "expected to be deleted");
+		assertEquals(lastModified, Files.getLastModifiedTime(staged));
+		FileFingerprint fingerprint = FileFingerprint.of(staged);
+		// Same size and modification time but other content, only a checksum would tell them apart
+		Files.writeString(source, "STRING");
+		Files.setLastModifiedTime(source, lastModified);
+		assertTrue(fingerprint.matches(source), "expected the next run to skip the source without hashing it");
 	}
 
 	@Test
-	void deleteProcessedFileWhenFileDoesNotExistTest() {
+	void archiveKeepsNewestGenerationsTest() throws IOException {
 		// Arrange
-		Path missingFile = tempDir.resolve("missingFile.csv");
+		Path incoming = tempDir.resolve("OrgExport.csv");
+		Files.writeString(incoming, "string");
+		Path processedDir = tempDir.resolve("processed");
+		Files.createDirectories(processedDir);
+		Files.writeString(processedDir.resolve("OrgExport.csv"), "legacy");
+		Files.writeString(processedDir.resolve("OrgExport-20240101-000000.csv"), "oldest");
+		Files.writeString(processedDir.resolve("OrgExport-20240102-000000.csv"), "older");
+		Files.writeString(processedDir.resolve("EmpExport-20240101-000000.csv"), "other");
 		// Act
-		fileManager.deletePreviouslyProcessedFile(missingFile);
+		Path archived = fileManager.archive(incoming, processedDir, 2, Long.MAX_VALUE, Compression.NONE);
 		// Assert
-		assertFalse(Files.exists(missingFile));
+		assertFalse(Files.exists(incoming), "expected file to be moved");
+		assertTrue(archived.getFileName().toString().matches("OrgExport-\\d{8}-\\d{6}\\.csv"));
+		assertEquals("string", Files.readString(archived));
+		try (var files = Files.list(processedDir)) {
+			assertEquals(List.of("EmpExport-20240101-000000.csv", "OrgExport-20240102-000000.csv", archived.getFileName().toString()),
+				files.map(file -> file.getFileName().toString()).sorted().toList());
+		}
 	}
 
 	@Test
-	void testMoveFile_whenTargetDirIsAFile_shouldThrowIllegalStateException() throws IOException {
-		Path incomingDir = tempDir.resolve("incoming");
-		Files.createDirectories(incomingDir);
+	void archiveRemovesGenerationsBeyondMaxSizeTest() throws IOException {
+		// Arrange
+		Path incoming = tempDir.resolve("OrgExport.csv");
+		Files.writeString(incoming, "string");
+		Path processedDir = tempDir.resolve("processed");
+		Files.createDirectories(processedDir);
+		Files.writeString(processedDir.resolve("OrgExport-20240102-000000.csv"), "older");
+		// Act
+		Path archived = fileManager.archive(incoming, processedDir, 5, 10, Compression.NONE);
+		// Assert
+		try (var files = Files.list(processedDir)) {
+			assertEquals(List.of(archived), files.toList());
+		}
+	}
 
-		Path filePath = incomingDir.resolve("OrgExport.csv");
-		Files.writeString(filePath, "string");
+	@Test
+	void archiveCompressesPlainFileTest() throws IOException {
+		// Arrange
+		Path incoming = tempDir.resolve("EmpExport.csv");
+		Files.writeString(incoming, "PersonId;Givenname\n10;Åsa\n");
+		Path processedDir = tempDir.resolve("processed");
+		// Act
+		Path archived = fileManager.archive(incoming, processedDir, 3, Long.MAX_VALUE, Compression.GZIP);
+		// Assert
+		assertTrue(archived.getFileName().toString().matches("EmpExport-\\d{8}-\\d{6}\\.csv\\.gz"));
+		assertFalse(Files.exists(incoming), "expected file to be removed");
+		assertEquals(Compression.GZIP, Compression.of(archived));
+		try (InputStream in = Compression.open(archived)) {
+			assertEquals("PersonId;Givenname\n10;Åsa\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+		}
+	}
 
+	@Test
+	void archiveKeepsGenerationsOfTheSameSecondTest() throws IOException {
+		// Arrange
 		Path processedDir = tempDir.resolve("processed");
-		Files.writeString(processedDir, "file");
-		assertTrue(Files.isRegularFile(processedDir));
+		List<Path> archived = new ArrayList<>();
+		// Act
+		for (String content : List.of("first", "second", "third")) {
+			Path incoming = tempDir.resolve("OrgExport.csv");
+			Files.writeString(incoming, content);
+			archived.add(fileManager.archive(incoming, processedDir, 2, Long.MAX_VALUE, Compression.NONE));
+		}
+		// Assert
+		assertEquals(3, archived.stream().distinct().count());
+		assertTrue(archived.stream().allMatch(file -> file.getFileName().toString().matches("OrgExport-\\d{8}-\\d{6}(_\\d{2})?\\.csv")));
+		try (var files = Files.list(processedDir)) {
+			List<Path> kept = files.sorted().toList();
+			assertEquals(List.of("second", "third"), kept.stream().map(this::read).toList());
+		}
+	}
 
-		assertThrows(IllegalStateException.class, () -> fileManager.moveFile(filePath, processedDir));
+	private String read(Path file) {
+		try {
+			return Files.readString(file);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	@Test
@@ -126,4 +193,129 @@ public class FileManagerTest {
 
 		assertTrue(exception.getMessage().startsWith("Failed reading file:"));
 	}
+
+	@Test
+	void verifyCsv_acceptsExpectedLayout() throws IOException {
+		Path file = tempDir.resolve("EmpExport.csv");
+		Files.write(file, ("\uFEFFPersonId;Givenname;Lastname;OrgId\r\n" +
+			"10;Åsa;Öberg;A\r\n" +
+			"\r\n" +
+			"11;\"Per; junior\";Nilsson;B\r\n").getBytes(StandardCharsets.UTF_8));
+
+		CsvFileReport report = fileManager.verifyCsv(file, "EMP", ';', "PersonId", "OrgId");
+
+		assertTrue(report.byteOrderMark());
+		assertEquals(';', report.separator());
+		assertEquals(List.of("PersonId", "Givenname", "Lastname", "OrgId"), report.header());
+		assertEquals(2, report.sampledRows());
+		assertEquals(2, report.estimatedRows());
+	}
+
+	@Test
+	void verifyCsv_estimatesRowsOfLargeFile() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		StringBuilder content = new StringBuilder("CompanyId,OrgId,OrgName,ParentId,TreeLevel\n");
+		for (int i = 0; i < 100_000; i++) {
+			content.append("1,").append(100_000 + i).append(",Enhet,1,2\n");
+		}
+		Files.writeString(file, content);
+
+		CsvFileReport report = fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId", "OrgName", "ParentId", "TreeLevel");
+
+		assertTrue(report.sampledRows() < 100_000);
+		assertEquals(100_000, report.estimatedRows(), 100);
+	}
+
+	@Test
+	void verifyCsv_checksUncompressedContentOfGzipFile() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv.gz");
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8)) {
+			writer.write("CompanyId,OrgId,OrgName,ParentId,TreeLevel\n");
+			for (int i = 0; i < 100_000; i++) {
+				writer.write("1," + (100_000 + i) + ",Enhet,1,2\n");
+			}
+		}
+
+		CsvFileReport report = fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId", "OrgName", "ParentId", "TreeLevel");
+
+		assertEquals(',', report.separator());
+		assertEquals(100_000, report.estimatedRows(), 100);
+	}
+
+	@Test
+	void verifyCsv_failsOnOtherSeparator() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "CompanyId;OrgId;OrgName;ParentId;TreeLevel\n1;A;Root;;0\n");
+
+		IllegalStateException exception = assertThrows(
+			IllegalStateException.class, () -> fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId"));
+
+		assertTrue(exception.getMessage().startsWith("Unexpected separator ';', expected ','"));
+	}
+
+	@Test
+	void verifyCsv_failsOnMissingColumn() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "CompanyId,OrgName,ParentId,TreeLevel\n1,Root,,0\n");
+
+		IllegalStateException exception = assertThrows(
+			IllegalStateException.class, () -> fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId"));
+
+		assertTrue(exception.getMessage().startsWith("Missing columns [OrgId]"));
+	}
+
+	@Test
+	void verifyCsv_failsOnRowWithOtherFieldCount() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "CompanyId,OrgId,OrgName\n1,A,Root\n1,B,Sub,extra\n");
+
+		IllegalStateException exception = assertThrows(
+			IllegalStateException.class, () -> fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId"));
+
+		assertTrue(exception.getMessage().startsWith("Row 2 has more fields than the header's 3, 1 of 2 sampled rows have too many"));
+	}
+
+	@Test
+	void verifyCsv_acceptsRowsTheImportRejectsUpToMaxRejectedRows() throws IOException {
+		setField(fileManager, "maxRejectedRows", 1);
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.writeString(file, "CompanyId,OrgId,OrgName\n1,A,Root\n1,B,Sub,extra\n1,C\n1,D,Trailing,\n");
+
+		CsvFileReport report = fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId");
+
+		assertEquals(4, report.sampledRows());
+		assertEquals(1, report.rejectedRows());
+		assertEquals(2, report.firstRejectedRow());
+	}
+
+	@Test
+	void verifyCsv_ignoresRowCutInsideQuotedValue() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		StringBuilder content = new StringBuilder("CompanyId,OrgId,OrgName\n");
+		while (content.length() < 64 * 1024 - 100) {
+			content.append("1,A,Root\n");
+		}
+		// A value spanning many lines across the end of the sample, whose lines have more separators than the header
+		content.append("1,B,\"");
+		for (int i = 0; i < 50; i++) {
+			content.append("a,b,c,d\n");
+		}
+		content.append("\"\n1,C,Sub\n");
+		Files.writeString(file, content);
+
+		CsvFileReport report = fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId");
+
+		assertEquals(0, report.rejectedRows());
+	}
+
+	@Test
+	void verifyCsv_failsOnOtherEncoding() throws IOException {
+		Path file = tempDir.resolve("OrgExport.csv");
+		Files.write(file, "CompanyId,OrgId,OrgName\n1,A,Övriga\n".getBytes(StandardCharsets.ISO_8859_1));
+
+		IllegalStateException exception = assertThrows(
+			IllegalStateException.class, () -> fileManager.verifyCsv(file, "ORG", ',', "CompanyId", "OrgId"));
+
+		assertTrue(exception.getMessage().startsWith("File is not UTF-8 encoded"));
+	}
 }
@@ -0,0 +1,51 @@
+package se.sundsvall.cvsfilereader.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.sundsvall.csvfilereader.scheduler.ImportJobGraph;
+import se.sundsvall.csvfilereader.scheduler.OrganizationImportGate;
+import se.sundsvall.csvfilereader.scheduler.Scheduler;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+
+@ExtendWith(MockitoExtension.class)
+class ImportJobGraphTest {
+
+	@Mock
+	Scheduler scheduler;
+
+	@Mock
+	OrganizationImportGate organizationImportGate;
+
+	@Test
+	void runsBothJobsBehindTheGate() {
+		new ImportJobGraph(scheduler, organizationImportGate, new ImportThreads()).runAll();
+
+		verify(scheduler).importOrganizationsJob();
+		verify(scheduler).importEmployeesJob();
+		InOrder inOrder = inOrder(organizationImportGate);
+		inOrder.verify(organizationImportGate).expect();
+		inOrder.verify(organizationImportGate, atLeastOnce()).release();
+	}
+
+	@Test
+	void failedOrganizationImportReleasesGateAndIsRethrown() {
+		doThrow(new RuntimeException("[ORG] Import failed")).when(scheduler).importOrganizationsJob();
+
+		ImportJobGraph graph = new ImportJobGraph(scheduler, organizationImportGate, new ImportThreads());
+		RuntimeException exception = assertThrows(RuntimeException.class, graph::runAll);
+
+		assertEquals("[ORG] Import failed", exception.getMessage());
+		verify(scheduler).importEmployeesJob();
+		verify(organizationImportGate, atLeastOnce()).release();
+	}
+}
@@ -0,0 +1,158 @@
+package se.sundsvall.cvsfilereader.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import se.sundsvall.csvfilereader.db.JobLock;
+import se.sundsvall.csvfilereader.db.JobLockRepository;
+import se.sundsvall.csvfilereader.scheduler.OrganizationImportGate;
+
+@ExtendWith(MockitoExtension.class)
+class OrganizationImportGateTest {
+
+	@Mock
+	JobLockRepository jobLockRepository;
+
+	@Mock
+	ObjectProvider<TaskScheduler> taskScheduler;
+
+	OrganizationImportGate gate;
+
+	@BeforeEach
+	void setup() {
+		gate = new OrganizationImportGate(jobLockRepository, taskScheduler);
+		setField(gate, "orgJobName", "org-import");
+		setField(gate, "orgCron", "-");
+		setField(gate, "organizationWait", Duration.ofSeconds(10));
+		setField(gate, "pollInterval", Duration.ofMillis(10));
+	}
+
+	@Test
+	void returnsWhenNothingIsPending() {
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.empty());
+
+		gate.await();
+
+		verify(jobLockRepository).findByJobName("org-import");
+	}
+
+	@Test
+	void waitsForExpectedRun() {
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.empty());
+		AtomicBoolean released = new AtomicBoolean();
+
+		gate.expect();
+		CompletableFuture.runAsync(() -> {
+			released.set(true);
+			gate.release();
+		}, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+		gate.await();
+
+		assertTrue(released.get());
+	}
+
+	@Test
+	void waitsWhileLockIsHeld() {
+		Instant now = Instant.now();
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(
+			Optional.of(lock(now.minusSeconds(10), now.plusSeconds(60), now)),
+			Optional.of(lock(now.minusSeconds(10), now, now)));
+
+		gate.await();
+
+		verify(jobLockRepository, times(2)).findByJobName("org-import");
+	}
+
+	@Test
+	void waitsForRunDueOnTheSameTick() {
+		when(taskScheduler.getIfUnique()).thenReturn(new SimpleAsyncTaskScheduler());
+		setField(gate, "orgCron", "* * * * * *");
+		Instant now = Instant.now();
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(
+			Optional.of(lock(now.minusSeconds(3600), now.minusSeconds(3590), now)),
+			Optional.of(lock(Instant.now(), Instant.now(), Instant.now())));
+
+		gate.await();
+
+		verify(jobLockRepository, times(2)).findByJobName("org-import");
+	}
+
+	@Test
+	void waitsForRunDueOnTheSameTickWithFreeSchedulerThread() throws Exception {
+		ThreadPoolTaskScheduler scheduler = scheduler(2);
+		when(taskScheduler.getIfUnique()).thenReturn(scheduler);
+		setField(gate, "orgCron", "* * * * * *");
+		Instant now = Instant.now();
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(
+			Optional.of(lock(now.minusSeconds(3600), now.minusSeconds(3590), now)),
+			Optional.of(lock(Instant.now(), Instant.now(), Instant.now())));
+
+		try {
+			scheduler.getScheduledThreadPoolExecutor().submit(gate::await).get(5, TimeUnit.SECONDS);
+		} finally {
+			scheduler.shutdown();
+		}
+
+		verify(jobLockRepository, times(2)).findByJobName("org-import");
+	}
+
+	@Test
+	void doesNotWaitForRunDueOnTheSameTickOnSingleSchedulerThread() throws Exception {
+		ThreadPoolTaskScheduler scheduler = scheduler(1);
+		when(taskScheduler.getIfUnique()).thenReturn(scheduler);
+		setField(gate, "orgCron", "* * * * * *");
+		Instant now = Instant.now();
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.of(lock(now.minusSeconds(3600), now.minusSeconds(3590), now)));
+
+		// The employee job runs on the only scheduler thread, the organization run cannot start until it returns
+		try {
+			scheduler.getScheduledThreadPoolExecutor().submit(gate::await).get(5, TimeUnit.SECONDS);
+		} finally {
+			scheduler.shutdown();
+		}
+
+		verify(jobLockRepository).findByJobName("org-import");
+	}
+
+	@Test
+	void givesUpAfterOrganizationWait() {
+		setField(gate, "organizationWait", Duration.ofMillis(50));
+		Instant now = Instant.now();
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.of(lock(now, now.plusSeconds(60), now)));
+
+		gate.await();
+
+		verify(jobLockRepository, atLeastOnce()).findByJobName("org-import");
+	}
+
+	private static ThreadPoolTaskScheduler scheduler(int poolSize) {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(poolSize);
+		scheduler.initialize();
+		return scheduler;
+	}
+
+	private static JobLock lock(Instant lockedAt, Instant lockUntil, Instant now) {
+		return new JobLock(Timestamp.from(lockedAt), Timestamp.from(lockUntil), Timestamp.from(now));
+	}
+}
@@ -1,21 +1,43 @@
 package se.sundsvall.cvsfilereader.scheduler;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyChar;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.springframework.util.unit.DataSize;
+import se.sundsvall.csvfilereader.db.ProcessedFileRepository;
+import se.sundsvall.csvfilereader.file.Compression;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
 import se.sundsvall.csvfilereader.file.FileManager;
+import se.sundsvall.csvfilereader.file.StagingMode;
+import se.sundsvall.csvfilereader.scheduler.OrganizationImportGate;
 import se.sundsvall.csvfilereader.scheduler.Scheduler;
+import se.sundsvall.csvfilereader.service.ChangeLogService;
+import se.sundsvall.csvfilereader.service.ChangeLogService.Capture;
+import se.sundsvall.csvfilereader.service.DirectoryService;
 import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
 import se.sundsvall.csvfilereader.service.OrganizationImportService;
 
 public class SchedulerTest {
@@ -23,14 +45,32 @@ public class SchedulerTest {
 	@TempDir
 	Path tempDir;
 
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	ImportMetrics importMetrics = new ImportMetrics(meterRegistry);
+
+	OrganizationImportGate organizationImportGate = Mockito.mock(OrganizationImportGate.class);
+
+	DirectoryService directoryService = Mockito.mock(DirectoryService.class);
+
+	ChangeLogService changeLogService = Mockito.mock(ChangeLogService.class);
+
+	Capture changes = Mockito.mock(Capture.class);
+
+	@BeforeEach
+	void setup() {
+		when(changeLogService.capture(any(), any())).thenReturn(changes);
+	}
+
 	@Test
 	void importOrganizationsJobTest() throws Exception {
 		// arrange
 		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
 		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
 		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
 
-		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager);
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
 
 		Path tempDownloadDir = tempDir.resolve("temp-download");
 		Path incomingDir = tempDir.resolve("incoming");
@@ -45,23 +85,28 @@ public class SchedulerTest {
 		Path orgCsvPath = tempDownloadDir.resolve(orgCsv);
 		Files.writeString(orgCsvPath, "CompanyId,OrgId,OrgName,ParentId,TreeLevel\n1,A,Root,,0\n");
 
-		setField(scheduler, "tempDownloadDir", tempDownloadDir);
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
 		setField(scheduler, "incomingDir", incomingDir);
 		setField(scheduler, "processedDir", processedDir);
 		setField(scheduler, "orgFileName", orgCsv);
+		setField(scheduler, "staging", StagingMode.LINK);
+		setField(scheduler, "processedGenerations", 3);
+		setField(scheduler, "processedMaxSize", DataSize.ofMegabytes(10));
+		setField(scheduler, "processedCompression", Compression.GZIP);
+		setField(scheduler, "orgJobName", "org-import");
 
 		Path expectedFile = incomingDir.resolve(orgCsv);
-		Path expectedOldFile = processedDir.resolve(orgCsv);
+		when(fileManager.stage(orgCsvPath, incomingDir, StagingMode.LINK)).thenReturn(expectedFile);
 
 		// act
 		scheduler.importOrganizationsJob();
 
-		assert Files.exists(expectedFile);
-
 		// and dependencies were called with correct paths
 		verify(organizationImportService).importOrganizations(expectedFile);
-		verify(fileManager).deletePreviouslyProcessedFile(expectedOldFile);
-		verify(fileManager).moveFile(expectedFile, processedDir);
+		verify(fileManager).archive(expectedFile, processedDir, 3, 10L * 1024 * 1024, Compression.GZIP);
+		verify(directoryService).refreshAfter("org-import");
+		verify(changeLogService).capture("org-import", ChangeLogService.ORGANIZATIONS);
+		verify(changes).publish();
 	}
 
 	@Test
@@ -70,8 +115,9 @@ public class SchedulerTest {
 		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
 		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
 		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
 
-		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager);
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
 
 		Path tempDownloadDir = tempDir.resolve("temp-download");
 		Path incomingDir = tempDir.resolve("incoming");
@@ -86,22 +132,28 @@ public class SchedulerTest {
 		Path empCsvPath = tempDownloadDir.resolve(empCsv);
 		Files.writeString(empCsvPath, "PersonId;Givenname;Lastname;123;Alice;Andersson");
 
-		setField(scheduler, "tempDownloadDir", tempDownloadDir);
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
 		setField(scheduler, "incomingDir", incomingDir);
 		setField(scheduler, "processedDir", processedDir);
 		setField(scheduler, "empFileName", empCsv);
+		setField(scheduler, "staging", StagingMode.COPY);
+		setField(scheduler, "processedGenerations", 3);
+		setField(scheduler, "processedMaxSize", DataSize.ofMegabytes(10));
+		setField(scheduler, "processedCompression", Compression.GZIP);
 
 		Path expectedFile = incomingDir.resolve(empCsv);
-		Path expectedOldFile = processedDir.resolve(empCsv);
+		when(fileManager.stage(empCsvPath, incomingDir, StagingMode.COPY)).thenReturn(expectedFile);
 
 		// act
 		scheduler.importEmployeesJob();
 
-		assert Files.exists(expectedFile);
+		ArgumentCaptor<Runnable> awaitOrganizations = ArgumentCaptor.forClass(Runnable.class);
+		verify(employeeImportService).importEmployee(eq(expectedFile), awaitOrganizations.capture());
+		verify(fileManager).archive(expectedFile, processedDir, 3, 10L * 1024 * 1024, Compression.GZIP);
 
-		verify(employeeImportService).importEmployee(expectedFile);
-		verify(fileManager).deletePreviouslyProcessedFile(expectedOldFile);
-		verify(fileManager).moveFile(expectedFile, processedDir);
+		// and org id resolution waits for the organization import
+		awaitOrganizations.getValue().run();
+		verify(organizationImportGate).await();
 	}
 
 	@Test
@@ -109,8 +161,9 @@ public class SchedulerTest {
 		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
 		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
 		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
 
-		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager);
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
 
 		Path tempDownloadDir = tempDir.resolve("temp-download");
 		Path incomingDir = tempDir.resolve("incoming");
@@ -122,16 +175,20 @@ public class SchedulerTest {
 
 		Files.writeString(tempDir.resolve(tempDownloadDir).resolve("emp.csv"), "test");
 
-		setField(scheduler, "tempDownloadDir", tempDownloadDir);
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
 		setField(scheduler, "incomingDir", incomingDir);
 		setField(scheduler, "processedDir", processedDir);
 		setField(scheduler, "empFileName", "emp.csv");
 
-		doThrow(new RuntimeException("exception")).when(employeeImportService).importEmployee(any(Path.class));
+		when(fileManager.stage(any(Path.class), eq(incomingDir), any())).thenReturn(incomingDir.resolve("emp.csv"));
+		doThrow(new RuntimeException("exception")).when(employeeImportService).importEmployee(any(Path.class), any(Runnable.class));
 
 		RuntimeException exception = assertThrows(RuntimeException.class, scheduler::importEmployeesJob);
 
 		assertTrue(exception.getMessage().startsWith("[EMP] Import failed"));
+		// Batches committed before the failure are changes as well
+		verify(changes).publish();
+		assertEquals(1, meterRegistry.get("csvfilereader.import.duration").tags("job", "emp-import", "outcome", "failure").timer().count());
 	}
 
 	@Test
@@ -139,8 +196,9 @@ public class SchedulerTest {
 		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
 		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
 		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
 
-		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager);
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
 
 		Path tempDownloadDir = tempDir.resolve("temp-download");
 		Path incomingDir = tempDir.resolve("incoming");
@@ -152,15 +210,127 @@ public class SchedulerTest {
 
 		Files.writeString(tempDir.resolve(tempDownloadDir).resolve("org.csv"), "test");
 
-		setField(scheduler, "tempDownloadDir", tempDownloadDir);
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
 		setField(scheduler, "incomingDir", incomingDir);
 		setField(scheduler, "processedDir", processedDir);
 		setField(scheduler, "orgFileName", "org.csv");
 
+		when(fileManager.stage(any(Path.class), eq(incomingDir), any())).thenReturn(incomingDir.resolve("org.csv"));
 		doThrow(new RuntimeException("exception")).when(organizationImportService).importOrganizations(any(Path.class));
 
 		RuntimeException exception = assertThrows(RuntimeException.class, scheduler::importOrganizationsJob);
 
 		assertTrue(exception.getMessage().startsWith("[ORG] Import failed"));
+		verifyNoInteractions(directoryService);
+	}
+
+	@Test
+	void importOrganizationsJob_failsOnInvalidFileBeforeImport() throws Exception {
+		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
+		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
+		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
+
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
+
+		Path tempDownloadDir = tempDir.resolve("temp-download");
+		Path incomingDir = tempDir.resolve("incoming");
+		Files.createDirectories(tempDownloadDir);
+		Files.createDirectories(incomingDir);
+		Files.writeString(tempDownloadDir.resolve("org.csv"), "CompanyId;OrgId\n1;A\n");
+
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
+		setField(scheduler, "incomingDir", incomingDir);
+		setField(scheduler, "processedDir", tempDir.resolve("processed"));
+		setField(scheduler, "orgFileName", "org.csv");
+
+		doThrow(new IllegalStateException("Unexpected separator")).when(fileManager).verifyCsv(any(Path.class), anyString(), anyChar(), any(String[].class));
+
+		RuntimeException exception = assertThrows(RuntimeException.class, scheduler::importOrganizationsJob);
+
+		assertTrue(exception.getMessage().startsWith("[ORG] Import failed"));
+		assertFalse(Files.exists(incomingDir.resolve("org.csv")));
+		verifyNoInteractions(organizationImportService);
+	}
+
+	@Test
+	void importEmployeesJob_skipsUnchangedFile() throws Exception {
+		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
+		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
+		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
+
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
+
+		Path tempDownloadDir = tempDir.resolve("temp-download");
+		Path incomingDir = tempDir.resolve("incoming");
+		Path processedDir = tempDir.resolve("processed");
+
+		Files.createDirectories(tempDownloadDir);
+		Files.createDirectories(incomingDir);
+		Files.createDirectories(processedDir);
+
+		Path empCsvPath = tempDownloadDir.resolve("emp.csv");
+		Files.writeString(empCsvPath, "PersonId;Givenname;Lastname\n123;Alice;Andersson\n");
+
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
+		setField(scheduler, "incomingDir", incomingDir);
+		setField(scheduler, "processedDir", processedDir);
+		setField(scheduler, "empFileName", "emp.csv");
+		setField(scheduler, "empJobName", "emp-import");
+		setField(scheduler, "skipUnchangedFiles", true);
+
+		when(processedFileRepository.findByJobName("emp-import")).thenReturn(Optional.of(FileFingerprint.of(empCsvPath)));
+
+		scheduler.importEmployeesJob();
+
+		assertFalse(Files.exists(incomingDir.resolve("emp.csv")));
+		verifyNoInteractions(employeeImportService, fileManager);
+		assertEquals(1, meterRegistry.get("csvfilereader.import.duration").tags("job", "emp-import", "outcome", "skipped").timer().count());
+		verify(processedFileRepository, never()).save(any(), any());
+	}
+
+	@Test
+	void importOrganizationsJob_recordsFingerprintOfChangedFile() throws Exception {
+		EmployeeImportService employeeImportService = Mockito.mock(EmployeeImportService.class);
+		OrganizationImportService organizationImportService = Mockito.mock(OrganizationImportService.class);
+		FileManager fileManager = Mockito.mock(FileManager.class);
+		ProcessedFileRepository processedFileRepository = Mockito.mock(ProcessedFileRepository.class);
+
+		Scheduler scheduler = new Scheduler(employeeImportService, organizationImportService, fileManager, processedFileRepository, importMetrics, organizationImportGate, directoryService, changeLogService);
+
+		Path tempDownloadDir = tempDir.resolve("temp-download");
+		Path incomingDir = tempDir.resolve("incoming");
+		Path processedDir = tempDir.resolve("processed");
+
+		Files.createDirectories(tempDownloadDir);
+		Files.createDirectories(incomingDir);
+		Files.createDirectories(processedDir);
+
+		Path orgCsvPath = tempDownloadDir.resolve("org.csv");
+		Files.writeString(orgCsvPath, "CompanyId,OrgId,OrgName,ParentId,TreeLevel\n1,A,Root,,0\n");
+
+		setField(scheduler, "fileSourceDir", tempDownloadDir);
+		setField(scheduler, "incomingDir", incomingDir);
+		setField(scheduler, "processedDir", processedDir);
+		setField(scheduler, "orgFileName", "org.csv");
+		setField(scheduler, "orgJobName", "org-import");
+		setField(scheduler, "skipUnchangedFiles", true);
+
+		when(processedFileRepository.findByJobName("org-import")).thenReturn(Optional.empty());
+		// The exporter replaces the source right after it was staged
+		Path stagedCsv = incomingDir.resolve("org.csv");
+		when(fileManager.stage(orgCsvPath, incomingDir, null)).thenAnswer(invocation -> {
+			Files.copy(orgCsvPath, stagedCsv);
+			Files.writeString(orgCsvPath, "CompanyId,OrgId,OrgName,ParentId,TreeLevel\n1,B,Next root,,0\n");
+			return stagedCsv;
+		});
+
+		scheduler.importOrganizationsJob();
+
+		verify(organizationImportService).importOrganizations(stagedCsv);
+		FileFingerprint staged = FileFingerprint.of(stagedCsv);
+		verify(processedFileRepository).save("org-import", staged);
+		assertFalse(staged.matches(orgCsvPath));
 	}
 }
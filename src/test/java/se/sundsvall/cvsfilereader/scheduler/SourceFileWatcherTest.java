@@ -0,0 +1,93 @@
+package se.sundsvall.cvsfilereader.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.sundsvall.csvfilereader.scheduler.ImportJobGraph;
+import se.sundsvall.csvfilereader.scheduler.Scheduler;
+import se.sundsvall.csvfilereader.scheduler.SourceFileWatcher;
+
+@ExtendWith(MockitoExtension.class)
+class SourceFileWatcherTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Mock
+	Scheduler scheduler;
+
+	@Mock
+	ImportJobGraph importJobGraph;
+
+	SourceFileWatcher watcher;
+
+	@BeforeEach
+	void setup() {
+		watcher = new SourceFileWatcher(scheduler, importJobGraph);
+		setField(watcher, "enabled", true);
+		setField(watcher, "stablePeriod", Duration.ofMillis(200));
+		setField(watcher, "pollInterval", Duration.ofMillis(20));
+		setField(watcher, "fileSourceDir", tempDir);
+		setField(watcher, "orgFileName", "OrgExport.csv");
+		setField(watcher, "empFileName", "EmpExport.csv");
+	}
+
+	@AfterEach
+	void tearDown() {
+		watcher.stop();
+	}
+
+	@Test
+	void startsJobOnceFileHasLanded() throws Exception {
+		watcher.start();
+		assertTrue(watcher.isRunning());
+
+		Files.writeString(tempDir.resolve("notes.txt"), "ignored");
+		Files.writeString(tempDir.resolve("EmpExport.csv"), "PersonId;Givenname\n");
+		Files.writeString(tempDir.resolve("EmpExport.csv"), "PersonId;Givenname\n10;Eva\n");
+
+		verify(scheduler, timeout(5000)).importEmployeesJob();
+		verifyNoMoreInteractions(scheduler);
+		verifyNoInteractions(importJobGraph);
+	}
+
+	@Test
+	void waitsUntilFileStopsGrowing() throws Exception {
+		watcher.start();
+		Path orgCsv = tempDir.resolve("OrgExport.csv");
+
+		Files.writeString(orgCsv, "CompanyId,OrgId\n");
+		for (int i = 0; i < 10; i++) {
+			Thread.sleep(50);
+			Files.writeString(orgCsv, "1,A" + i + "\n", StandardOpenOption.APPEND);
+			verifyNoInteractions(scheduler);
+		}
+
+		verify(scheduler, timeout(5000)).importOrganizationsJob();
+	}
+
+	@Test
+	void doesNothingWhenDisabled() {
+		setField(watcher, "enabled", false);
+
+		watcher.start();
+
+		assertFalse(watcher.isRunning());
+	}
+}
@@ -0,0 +1,142 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.service.BulkLoadService;
+import se.sundsvall.csvfilereader.service.EmployeeDeactivationService;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+
+@ExtendWith(MockitoExtension.class)
+class BulkLoadServiceTest {
+
+	private static final Object[] UNKNOWN = {
+		"1", "UNKNOWN", "Övriga personer", "13", "2"
+	};
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	@Mock
+	ImportMetrics importMetrics;
+
+	@Mock
+	EmployeeDeactivationService deactivationService;
+
+	@Mock
+	Connection connection;
+
+	@Mock
+	Statement statement;
+
+	BulkLoadService bulkLoadService;
+
+	// What LOAD DATA LOCAL INFILE was sent
+	private final AtomicReference<String> loaded = new AtomicReference<>();
+
+	@BeforeEach
+	void setup() throws SQLException {
+		bulkLoadService = new BulkLoadService(jdbcTemplate, importMetrics, deactivationService);
+
+		org.mariadb.jdbc.Statement mariaDbStatement = mock(org.mariadb.jdbc.Statement.class);
+		AtomicReference<InputStream> input = new AtomicReference<>();
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.unwrap(org.mariadb.jdbc.Statement.class)).thenReturn(mariaDbStatement);
+		doAnswer(invocation -> {
+			input.set(invocation.getArgument(0));
+			return null;
+		}).when(mariaDbStatement).setLocalInfileInputStream(any());
+		when(statement.execute(anyString())).thenAnswer(invocation -> {
+			if (invocation.<String>getArgument(0).startsWith("LOAD DATA")) {
+				loaded.set(new String(input.get().readAllBytes(), StandardCharsets.UTF_8));
+			}
+			return false;
+		});
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+	}
+
+	@Test
+	void swapOfEmptyFileKeepsLiveTable() throws SQLException {
+		// Only the UNKNOWN organization, added by the import
+		List<Object[]> rows = List.<Object[]>of(UNKNOWN);
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> bulkLoadService.swapOrganizations(rows.iterator(), 1));
+
+		assertEquals("No organizations in the file, keeping the live organization table", exception.getMessage());
+		assertEquals("1\tUNKNOWN\tÖvriga personer\t13\t2\n", loaded.get());
+		verify(statement, never()).execute(startsWith("RENAME"));
+		verify(statement, never()).execute(contains("organization_previous"));
+		verify(statement, times(2)).execute("DROP TABLE IF EXISTS organization_next");
+	}
+
+	@Test
+	void swapDropsOldestGenerationOnlyAfterRename() throws SQLException {
+		ResultSet previous = mock(ResultSet.class);
+		when(previous.next()).thenReturn(true);
+		when(statement.executeQuery(contains("information_schema.tables"))).thenReturn(previous);
+
+		bulkLoadService.swapOrganizations(List.<Object[]>of(new Object[] {
+			"1", "A", "Org A", "13", "1"
+		}, UNKNOWN).iterator(), 1);
+
+		InOrder inOrder = inOrder(statement);
+		inOrder.verify(statement).execute("DROP TABLE IF EXISTS organization_retired");
+		inOrder.verify(statement).execute(startsWith("RENAME TABLE organization_previous TO organization_retired,"));
+		inOrder.verify(statement).execute("DROP TABLE organization_retired");
+		inOrder.verify(statement).execute("DROP TABLE IF EXISTS organization_next");
+		verify(statement, never()).execute(contains("DROP TABLE IF EXISTS organization_previous"));
+	}
+
+	@Test
+	void firstSwapKeepsLiveTableAsPrevious() throws SQLException {
+		when(statement.executeQuery(anyString())).thenReturn(mock(ResultSet.class));
+
+		bulkLoadService.swapOrganizations(List.<Object[]>of(new Object[] {
+			"1", "A", "Org A", "13", "1"
+		}, UNKNOWN).iterator(), 1);
+
+		verify(statement).execute("RENAME TABLE organization TO organization_previous, organization_next TO organization");
+		verify(statement, never()).execute("DROP TABLE organization_retired");
+	}
+
+	@Test
+	void loadEmployeesDeactivatesThroughGuardedSweep() throws SQLException {
+		when(deactivationService.deactivateNotInStage(connection)).thenReturn(3);
+
+		bulkLoadService.loadEmployees(List.<Object[]>of(new Object[] {
+			"10", "Anna", "Andersson", null, null, "Lärare", "A", "anna@sundsvall.se", null, null, true
+		}).iterator());
+
+		verify(deactivationService).deactivateNotInStage(connection);
+		verify(importMetrics).deactivated(ImportMetrics.EMP_IMPORT, 3);
+		verify(statement, never()).executeUpdate(contains("SET e.active_employee = false"));
+		verify(statement, times(2)).execute("DROP TEMPORARY TABLE IF EXISTS employee_stage");
+	}
+}
@@ -0,0 +1,169 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import se.sundsvall.csvfilereader.db.ChangeLogRepository;
+import se.sundsvall.csvfilereader.file.ChangeLogFile;
+import se.sundsvall.csvfilereader.file.ChangeLogFile.Change;
+import se.sundsvall.csvfilereader.service.ChangeLogService;
+import se.sundsvall.csvfilereader.service.ChangeLogService.Capture;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeLogServiceTest {
+
+	// Rows of live organizations that are new or changed, and of removed ones
+	private static final String CHANGED = "SELECT t.org_id";
+	private static final String REMOVED = "SELECT s.org_id";
+
+	@TempDir
+	Path tempDir;
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	@Mock
+	ChangeLogRepository changeLogRepository;
+
+	ChangeLogService changeLogService;
+
+	@BeforeEach
+	void setup() {
+		changeLogService = new ChangeLogService(jdbcTemplate, changeLogRepository);
+		setField(changeLogService, "enabled", true);
+		setField(changeLogService, "outboxDir", tempDir);
+	}
+
+	@Test
+	void capturesLiveRowsInSnapshotTable() {
+		changeLogService.capture("emp-import", ChangeLogService.EMPLOYEES);
+
+		verify(jdbcTemplate).execute("DROP TABLE IF EXISTS employee_change_snapshot");
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate, times(2)).execute(sql.capture());
+		assertTrue(sql.getValue().startsWith("CREATE TABLE employee_change_snapshot (PRIMARY KEY (person_id)) SELECT t.person_id, t.first_name,"));
+		assertTrue(sql.getValue().endsWith(" FROM employee t WHERE t.active_employee = true"));
+	}
+
+	@Test
+	void publishesDifferencesBetweenSnapshotAndTable() throws Exception {
+		Capture capture = changeLogService.capture("org-import", ChangeLogService.ORGANIZATIONS);
+		rows(CHANGED, null, List.<Object[]>of(row("B", false), row("D", true)));
+		rows(REMOVED, null, List.<Object[]>of(row("C", false)));
+
+		capture.publish();
+
+		ArgumentCaptor<ChangeLogFile> file = ArgumentCaptor.forClass(ChangeLogFile.class);
+		verify(changeLogRepository).save(eq("org-import"), file.capture());
+		assertEquals(List.of(
+			"{\"entity\":\"organization\",\"id\":\"B\",\"change\":\"UPDATED\"}",
+			"{\"entity\":\"organization\",\"id\":\"D\",\"change\":\"INSERTED\"}",
+			"{\"entity\":\"organization\",\"id\":\"C\",\"change\":\"DELETED\"}"), Files.readAllLines(file.getValue().path()));
+		assertEquals(1, file.getValue().count(Change.DELETED));
+		verify(jdbcTemplate, times(2)).execute("DROP TABLE IF EXISTS organization_change_snapshot");
+	}
+
+	@Test
+	void readsChangesInChunksOfKeys() throws Exception {
+		Capture capture = changeLogService.capture("org-import", ChangeLogService.ORGANIZATIONS);
+		List<Object[]> full = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			full.add(row("%04d".formatted(i), true));
+		}
+		rows(CHANGED, null, full);
+		rows(CHANGED, "0999", List.<Object[]>of(row("1000", false)));
+		rows(REMOVED, null, List.<Object[]>of());
+
+		capture.publish();
+
+		ArgumentCaptor<ChangeLogFile> file = ArgumentCaptor.forClass(ChangeLogFile.class);
+		verify(changeLogRepository).save(eq("org-import"), file.capture());
+		assertEquals(1000, file.getValue().count(Change.INSERTED));
+		assertEquals(1, file.getValue().count(Change.UPDATED));
+	}
+
+	@Test
+	void publishesNothingWithoutChanges() throws Exception {
+		Capture capture = changeLogService.capture("org-import", ChangeLogService.ORGANIZATIONS);
+		rows(CHANGED, null, List.<Object[]>of());
+		rows(REMOVED, null, List.<Object[]>of());
+
+		capture.publish();
+		capture.publish();
+
+		verifyNoInteractions(changeLogRepository);
+		assertEquals(0, Files.list(tempDir).count());
+		verify(jdbcTemplate, times(2)).execute("DROP TABLE IF EXISTS organization_change_snapshot");
+	}
+
+	@Test
+	void publishesNothingWhenReadingFails() throws Exception {
+		Capture capture = changeLogService.capture("org-import", ChangeLogService.ORGANIZATIONS);
+		doThrow(new IllegalStateException("Connection lost")).when(jdbcTemplate).query(startsWith(CHANGED), any(RowCallbackHandler.class));
+
+		assertThrows(IllegalStateException.class, capture::publish);
+
+		verifyNoInteractions(changeLogRepository);
+		assertEquals(0, Files.list(tempDir).count());
+		verify(jdbcTemplate, times(2)).execute("DROP TABLE IF EXISTS organization_change_snapshot");
+	}
+
+	@Test
+	void disabledReadsNothing() {
+		setField(changeLogService, "enabled", false);
+
+		changeLogService.capture("emp-import", ChangeLogService.EMPLOYEES).publish();
+
+		verifyNoInteractions(jdbcTemplate, changeLogRepository);
+	}
+
+	private void rows(String select, String after, List<Object[]> rows) throws Exception {
+		var answer = doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (Object[] row : rows) {
+				ResultSet rs = mock(ResultSet.class);
+				lenient().when(rs.getString(1)).thenReturn((String) row[0]);
+				lenient().when(rs.getBoolean(2)).thenReturn((Boolean) row[1]);
+				handler.processRow(rs);
+			}
+			return null;
+		});
+		if (after == null) {
+			answer.when(jdbcTemplate).query(startsWith(select), any(RowCallbackHandler.class));
+		} else {
+			answer.when(jdbcTemplate).query(startsWith(select), any(RowCallbackHandler.class), eq(after));
+		}
+	}
+
+	private static Object[] row(String id, boolean inserted) {
+		return new Object[] {
+			id, inserted
+		};
+	}
+}
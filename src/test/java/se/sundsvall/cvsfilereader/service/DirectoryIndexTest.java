@@ -0,0 +1,60 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.api.model.Employee;
+import se.sundsvall.csvfilereader.api.model.Organization;
+import se.sundsvall.csvfilereader.service.DirectoryIndex;
+
+class DirectoryIndexTest {
+
+	private static final List<Organization> ORGANIZATIONS = List.of(
+		organization("root", null),
+		organization("b", "root"),
+		organization("a", "root"),
+		organization("a1", "a"),
+		organization("other", null));
+
+	private static final List<Employee> EMPLOYEES = List.of(
+		employee("1", "Eva.Andersson@Example.com"),
+		employee("2", "eva.andersson@example.com"),
+		employee("3", null));
+
+	DirectoryIndex index = DirectoryIndex.of(ORGANIZATIONS, EMPLOYEES);
+
+	@Test
+	void employeeLookups() {
+		assertEquals("3", index.employee("3").orElseThrow().personId());
+		assertEquals("1", index.employeeByEmail(" EVA.andersson@example.com").orElseThrow().personId());
+		assertTrue(index.employee("4").isEmpty());
+		assertTrue(index.employeeByEmail("nobody@example.com").isEmpty());
+		assertEquals(3, index.employees());
+	}
+
+	@Test
+	void subtreeDepthFirst() {
+		List<String> subtree = index.subtree("root").orElseThrow().stream().map(Organization::orgId).toList();
+
+		assertEquals(List.of("root", "a", "a1", "b"), subtree);
+		assertEquals(List.of("a1"), index.subtree("a1").orElseThrow().stream().map(Organization::orgId).toList());
+		assertTrue(index.subtree("missing").isEmpty());
+	}
+
+	@Test
+	void subtreeStopsAtCycle() {
+		DirectoryIndex cyclic = DirectoryIndex.of(List.of(organization("a", "b"), organization("b", "a")), List.of());
+
+		assertEquals(List.of("a", "b"), cyclic.subtree("a").orElseThrow().stream().map(Organization::orgId).toList());
+	}
+
+	private static Organization organization(String orgId, String parentOrgId) {
+		return new Organization(1, orgId, "Org " + orgId, parentOrgId, 1);
+	}
+
+	private static Employee employee(String personId, String email) {
+		return new Employee(personId, "Eva", "Andersson", null, null, "Lärare", "a", email, null, null);
+	}
+}
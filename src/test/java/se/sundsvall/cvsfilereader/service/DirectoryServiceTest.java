@@ -0,0 +1,141 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.db.JobLock;
+import se.sundsvall.csvfilereader.db.JobLockRepository;
+import se.sundsvall.csvfilereader.service.DirectoryService;
+
+@ExtendWith(MockitoExtension.class)
+class DirectoryServiceTest {
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	@Mock
+	JobLockRepository jobLockRepository;
+
+	DirectoryService directoryService;
+
+	@BeforeEach
+	void setup() {
+		directoryService = new DirectoryService(jdbcTemplate, jobLockRepository);
+		setField(directoryService, "enabled", true);
+		setField(directoryService, "orgJobName", "org-import");
+		setField(directoryService, "empJobName", "emp-import");
+	}
+
+	@Test
+	void refreshSwapsInNewIndex() throws SQLException {
+		when(jobLockRepository.findByJobName(anyString())).thenReturn(Optional.empty());
+		Connection connection = connection();
+		assertTrue(directoryService.index().isEmpty());
+
+		directoryService.refresh();
+
+		assertEquals(0, directoryService.index().orElseThrow().employees());
+		// Both tables are read in one read-only repeatable read transaction
+		InOrder inOrder = inOrder(connection);
+		inOrder.verify(connection).setReadOnly(true);
+		inOrder.verify(connection).setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+		inOrder.verify(connection).setAutoCommit(false);
+		inOrder.verify(connection).commit();
+		inOrder.verify(connection).setAutoCommit(true);
+		inOrder.verify(connection).setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+		inOrder.verify(connection).setReadOnly(false);
+	}
+
+	@Test
+	void refreshDropsIndexWhenImportStartedWhileReading() throws SQLException {
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.of(lock(false)));
+		when(jobLockRepository.findByJobName("emp-import")).thenReturn(Optional.empty(), Optional.of(lock(true)));
+		connection();
+
+		directoryService.refresh();
+
+		assertTrue(directoryService.index().isEmpty());
+	}
+
+	@Test
+	void refreshDropsIndexWhenImportRanWhileReading() throws SQLException {
+		JobLock before = lock(false);
+		JobLock after = new JobLock(new Timestamp(before.lockedAt().getTime() + 1_000), before.lockUntil(), before.now());
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.of(before), Optional.of(after));
+		when(jobLockRepository.findByJobName("emp-import")).thenReturn(Optional.empty());
+		connection();
+
+		directoryService.refresh();
+
+		assertTrue(directoryService.index().isEmpty());
+	}
+
+	@Test
+	void refreshAfterOrganizationsWaitsForRunningEmployeeImport() {
+		when(jobLockRepository.findByJobName("emp-import")).thenReturn(Optional.of(lock(true)));
+
+		directoryService.refreshAfter("org-import");
+
+		assertTrue(directoryService.index().isEmpty());
+		verify(jobLockRepository, never()).findByJobName("org-import");
+		verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+	}
+
+	@Test
+	void refreshAfterEmployeesOnlyChecksOrganizationImport() throws SQLException {
+		when(jobLockRepository.findByJobName("org-import")).thenReturn(Optional.of(lock(false)));
+		connection();
+
+		directoryService.refreshAfter("emp-import");
+
+		assertTrue(directoryService.index().isPresent());
+	}
+
+	@Test
+	void disabledNeverReads() {
+		setField(directoryService, "enabled", false);
+
+		directoryService.refresh();
+
+		verifyNoInteractions(jdbcTemplate, jobLockRepository);
+	}
+
+	private Connection connection() throws SQLException {
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(connection.getTransactionIsolation()).thenReturn(Connection.TRANSACTION_READ_COMMITTED);
+		when(connection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(anyString())).thenAnswer(invocation -> mock(ResultSet.class));
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+		return connection;
+	}
+
+	private static JobLock lock(boolean held) {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		return new JobLock(now, new Timestamp(now.getTime() + (held ? 60_000 : -60_000)), now);
+	}
+}
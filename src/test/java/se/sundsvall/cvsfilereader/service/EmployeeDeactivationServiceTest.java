@@ -0,0 +1,118 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.service.EmployeeDeactivationService;
+
+@ExtendWith(MockitoExtension.class)
+class EmployeeDeactivationServiceTest {
+
+	private static final Timestamp STARTED_AT = Timestamp.valueOf("2026-01-01 02:00:00");
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	EmployeeDeactivationService deactivationService;
+
+	@BeforeEach
+	void setup() {
+		deactivationService = new EmployeeDeactivationService(jdbcTemplate);
+		setField(deactivationService, "chunkSize", 2);
+		setField(deactivationService, "pause", Duration.ZERO);
+		setField(deactivationService, "maxRatio", 0.5);
+	}
+
+	@Test
+	void sweepsInPersonIdRanges() {
+		when(jdbcTemplate.queryForObject(contains("updated_at < ?"), eq(Long.class), eq(STARTED_AT))).thenReturn(3L);
+		when(jdbcTemplate.queryForObject(eq("SELECT COUNT(*) FROM employee WHERE active_employee = true"), eq(Long.class))).thenReturn(10L);
+		when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(1))).thenReturn(List.of("12"));
+		when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("12"), eq(1))).thenReturn(List.of("14"));
+		when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("14"), eq(1))).thenReturn(List.of());
+		when(jdbcTemplate.update(anyString(), eq(STARTED_AT), eq("12"))).thenReturn(1);
+		when(jdbcTemplate.update(anyString(), eq(STARTED_AT), eq("12"), eq("14"))).thenReturn(2);
+		when(jdbcTemplate.update(anyString(), eq(STARTED_AT), eq("14"))).thenReturn(0);
+
+		int deactivated = deactivationService.deactivateNotUpdatedSince(STARTED_AT);
+
+		assertEquals(3, deactivated);
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate).update(sql.capture(), eq(STARTED_AT), eq("12"), eq("14"));
+		assertTrue(sql.getValue().startsWith("UPDATE employee e SET e.active_employee = false WHERE"));
+		assertTrue(sql.getValue().endsWith("AND e.person_id > ? AND e.person_id <= ?"));
+	}
+
+	@Test
+	void refusesToDeactivateMoreThanAllowedRatio() {
+		when(jdbcTemplate.queryForObject(contains("import_run_seen_key"), eq(Long.class), eq(7L))).thenReturn(6L);
+		when(jdbcTemplate.queryForObject(eq("SELECT COUNT(*) FROM employee WHERE active_employee = true"), eq(Long.class))).thenReturn(10L);
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> deactivationService.deactivateNotSeenBy(7L));
+
+		assertTrue(exception.getMessage().startsWith("Refusing to deactivate 6 of 10 active employees"));
+		verify(jdbcTemplate, never()).update(anyString(), eq(7L));
+	}
+
+	@Test
+	void refusesToDeactivateMoreThanAllowedRatioMissingFromStage() throws SQLException {
+		// The stage table is only visible on the connection that loaded it
+		Connection connection = mock(Connection.class);
+		PreparedStatement missing = count(9L);
+		PreparedStatement active = count(10L);
+		when(connection.prepareStatement(anyString())).thenAnswer(invocation -> invocation.<String>getArgument(0).contains("employee_stage") ? missing : active);
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> deactivationService.deactivateNotInStage(connection));
+
+		assertTrue(exception.getMessage().startsWith("Refusing to deactivate 9 of 10 active employees"));
+		verify(connection, never()).prepareStatement(startsWith("UPDATE"));
+		verify(connection, never()).close();
+		verifyNoInteractions(jdbcTemplate);
+	}
+
+	@Test
+	void skipsSweepWhenNothingToDeactivate() {
+		when(jdbcTemplate.queryForObject(contains("updated_at < ?"), eq(Long.class), eq(STARTED_AT))).thenReturn(0L);
+
+		assertEquals(0, deactivationService.deactivateNotUpdatedSince(STARTED_AT));
+		verify(jdbcTemplate, never()).update(anyString(), eq(STARTED_AT));
+	}
+
+	private static PreparedStatement count(long count) throws SQLException {
+		ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+		when(metaData.getColumnCount()).thenReturn(1);
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.next()).thenReturn(true, false);
+		when(rs.getMetaData()).thenReturn(metaData);
+		when(rs.getLong(1)).thenReturn(count);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(statement.executeQuery()).thenReturn(rs);
+		return statement;
+	}
+}
@@ -4,23 +4,60 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
-import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import se.sundsvall.csvfilereader.db.ImportCheckpoint;
+import se.sundsvall.csvfilereader.db.ImportCheckpointRepository;
+import se.sundsvall.csvfilereader.db.ImportRunRepository;
+import se.sundsvall.csvfilereader.file.FileFingerprint;
+import se.sundsvall.csvfilereader.service.BatchSizerFactory;
+import se.sundsvall.csvfilereader.service.BulkLoadService;
+import se.sundsvall.csvfilereader.service.DeactivationMode;
+import se.sundsvall.csvfilereader.service.EmployeeDeactivationService;
 import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.HierarchyService;
+import se.sundsvall.csvfilereader.service.ImportEngine;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+import se.sundsvall.csvfilereader.service.MultiRowUpsertWriter;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache.OrganizationIds;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.ImportUtil;
 
 @ExtendWith(MockitoExtension.class)
 public class EmployeeImportServiceTest {
@@ -30,14 +67,43 @@ public class EmployeeImportServiceTest {
 	@Mock
 	JdbcTemplate jdbcTemplate;
 
+	@Mock
+	BulkLoadService bulkLoadService;
+
+	@Mock
+	OrganizationIdCache organizationIdCache;
+
+	@Mock
+	ImportCheckpointRepository checkpointRepository;
+
+	@Mock
+	ImportRunRepository importRunRepository;
+
+	@Mock
+	EmployeeDeactivationService deactivationService;
+
+	@Mock
+	MultiRowUpsertWriter multiRowUpsertWriter;
+
+	@Mock
+	HierarchyService hierarchyService;
+
 	EmployeeImportService importService;
 
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	ImportMetrics importMetrics = new ImportMetrics(meterRegistry);
+
 	@BeforeEach
 	void setup() throws Exception {
-		importService = new EmployeeImportService(jdbcTemplate);
+		importService = new EmployeeImportService(jdbcTemplate, bulkLoadService, organizationIdCache, importMetrics, checkpointRepository,
+			new BatchSizerFactory(importMetrics), importRunRepository,
+			deactivationService, multiRowUpsertWriter, hierarchyService, new ImportThreads());
 		var field = EmployeeImportService.class.getDeclaredField("batchSize");
 		field.setAccessible(true);
 		field.setInt(importService, 10);
+		setField(importService, "failedDir", tempDir.resolve("failed"));
+		setField(importService, "maxRejectedRows", 10);
 	}
 
 	@Test
@@ -49,19 +115,13 @@ public class EmployeeImportServiceTest {
 			10;förnamn;efternamn;;;Lärare;NoOrg;eva@test.com;;
 			""");
 
-		when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class)))
-			.thenReturn(List.of());
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		List<Object[]> batch = recordUpserts();
 
 		// Act
 		importService.importEmployee(empCsv);
 
 		// Assert
-		@SuppressWarnings("unchecked")
-		ArgumentCaptor<List<Object[]>> captor = (ArgumentCaptor<List<Object[]>>) (ArgumentCaptor<?>) ArgumentCaptor.forClass(List.class);
-
-		verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
-
-		List<Object[]> batch = captor.getValue();
 		assertEquals(1, batch.size());
 
 		Object[] row = batch.getFirst();
@@ -73,9 +133,337 @@ public class EmployeeImportServiceTest {
 		assertEquals("UNKNOWN", row[6]);
 		assertEquals("eva@test.com", row[7]);
 		assertEquals(true, row[10]);
+		verify(organizationIdCache).invalidate();
+		assertEquals(1, meterRegistry.get("csvfilereader.import.unknown.organizations").tag("job", "emp-import").counter().count());
+		assertEquals(1, meterRegistry.get("csvfilereader.import.rows").tag("job", "emp-import").counter().count());
+	}
+
+	@Test
+	void importEmployeeAwaitsOrganizationsBeforeResolvingOrgIdsTest() throws Exception {
+		// Arrange
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			11;förnamn;efternamn;;;Lärare;A;nils@test.com;;
+			""");
+
+		Runnable awaitOrganizations = mock(Runnable.class);
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		setField(importService, "batchSize", 1);
+
+		// Act
+		importService.importEmployee(empCsv, awaitOrganizations);
+
+		// Assert
+		InOrder inOrder = inOrder(awaitOrganizations, organizationIdCache, jdbcTemplate);
+		inOrder.verify(awaitOrganizations).run();
+		inOrder.verify(organizationIdCache).get();
+		inOrder.verify(jdbcTemplate, times(2)).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	void importEmployeeLeavesOrganizationWaitOutOfBatchLatencyTest() throws Exception {
+		// Arrange
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			""");
+
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		recordUpserts();
+
+		// Act
+		importService.importEmployee(empCsv, () -> {
+			try {
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		// Assert
+		Timer batchTimer = meterRegistry.get("csvfilereader.import.batch").tag("job", "emp-import").timer();
+		assertEquals(1, batchTimer.count());
+		assertTrue(batchTimer.max(TimeUnit.MILLISECONDS) < 300);
+	}
+
+	@Test
+	void importEmployeeWithMultiRowEngineTest() throws Exception {
+		// Arrange
+		setField(importService, "engine", ImportEngine.MULTI_ROW);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			11;förnamn;efternamn;;;Lärare;NoOrg;nils@test.com;;
+			""");
+
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		List<Object[]> written = new ArrayList<>();
+		doAnswer(invocation -> {
+			ColumnBatch.Binding binding = invocation.getArgument(1);
+			for (int i = 0; i < binding.getBatchSize(); i++) {
+				written.add(binding.row(i));
+			}
+			return null;
+		}).when(multiRowUpsertWriter).write(startsWith("INSERT INTO employee "), any(ColumnBatch.Binding.class));
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		assertEquals(2, written.size());
+		assertEquals("UNKNOWN", written.get(1)[6]);
+		assertEquals(true, written.get(1)[10]);
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	void importEmployeeDeltaOnlyTouchesUnchangedRowsTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("deltaEnabled");
+		field.setAccessible(true);
+		field.setBoolean(importService, true);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			""");
+
+		long previousHash = ImportUtil.rowHash(new Object[] {
+			"10", "förnamn", "efternamn", null, null, "Lärare", "A", "eva@test.com", null, null, true
+		});
+
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		doAnswer(invocation -> {
+			ResultSet rs = mock(ResultSet.class);
+			when(rs.getString(1)).thenReturn("10");
+			when(rs.getLong(2)).thenReturn(previousHash);
+			invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+		when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		verify(jdbcTemplate).update(startsWith("UPDATE employee SET updated_at"), any(Object[].class));
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	void importEmployeeResumesFromCheckpointTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("checkpointEnabled");
+		field.setAccessible(true);
+		field.setBoolean(importService, true);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			11;förnamn;efternamn;;;Lärare;A;per@test.com;;
+			12;förnamn;efternamn;;;Lärare;A;asa@test.com;;
+			""");
+
+		Timestamp interruptedRunStart = Timestamp.valueOf("2026-01-01 02:00:00");
+		when(checkpointRepository.findByJobName("emp-import"))
+			.thenReturn(Optional.of(new ImportCheckpoint(FileFingerprint.checksum(empCsv), 2, interruptedRunStart)));
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		List<Object[]> upserted = recordUpserts();
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		assertEquals(1, upserted.size());
+		assertEquals("12", upserted.getFirst()[0]);
+
+		verify(deactivationService).deactivateNotUpdatedSince(interruptedRunStart);
+		verify(checkpointRepository, never()).start(anyString(), anyString(), any());
+		verify(checkpointRepository).advance("emp-import", 3);
+		verify(checkpointRepository).delete("emp-import");
 	}
 
 	@Test
+	void importEmployeeStartsNewCheckpointForChangedFileTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("checkpointEnabled");
+		field.setAccessible(true);
+		field.setBoolean(importService, true);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			11;förnamn;efternamn;;;Lärare;A;per@test.com;;
+			""");
+
+		Timestamp now = Timestamp.valueOf("2026-01-02 02:00:00");
+		when(jdbcTemplate.queryForObject(anyString(), eq(Timestamp.class))).thenReturn(now);
+		when(checkpointRepository.findByJobName("emp-import"))
+			.thenReturn(Optional.of(new ImportCheckpoint("checksum of another file", 1, Timestamp.valueOf("2026-01-01 02:00:00"))));
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		verify(checkpointRepository).start("emp-import", FileFingerprint.checksum(empCsv), now);
+		verify(checkpointRepository).advance("emp-import", 2);
+		verify(deactivationService).deactivateNotUpdatedSince(now);
+		verify(checkpointRepository).delete("emp-import");
+	}
+
+	@Test
+	void importEmployeeWithSeenKeysDeactivationTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("deactivation");
+		field.setAccessible(true);
+		field.set(importService, DeactivationMode.SEEN_KEYS);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			11;förnamn;efternamn;;;Lärare;A;per@test.com;;
+			""");
+
+		when(importRunRepository.start("emp-import")).thenReturn(7L);
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		when(deactivationService.deactivateNotSeenBy(7L)).thenReturn(3);
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		verify(importRunRepository).saveSeenKeys(7L, List.of("10", "11"));
+		verify(jdbcTemplate).batchUpdate(contains("updated_at      = IF("), any(BatchPreparedStatementSetter.class));
+		verify(deactivationService, never()).deactivateNotUpdatedSince(any());
+		verify(importRunRepository).deleteSeenKeys(7L);
+		verify(importRunRepository).succeeded(7L, 2, 2, 3);
+	}
+
+	@Test
+	void importEmployeeWithSeenKeysMarksFailedRunTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("deactivation");
+		field.setAccessible(true);
+		field.set(importService, DeactivationMode.SEEN_KEYS);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;A;eva@test.com;;
+			""");
+
+		when(importRunRepository.start("emp-import")).thenReturn(7L);
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenThrow(new IllegalStateException("connection lost"));
+
+		// Act
+		assertThrows(IllegalStateException.class, () -> importService.importEmployee(empCsv));
+
+		// Assert
+		verify(importRunRepository).failed(7L);
+		verify(importRunRepository, never()).succeeded(anyLong(), anyLong(), anyLong(), anyLong());
+		verify(importRunRepository, never()).deleteSeenKeys(anyLong());
+	}
+
+	@Test
+	void importEmployeeWithLoadDataEngineTest() throws Exception {
+		// Arrange
+		var field = EmployeeImportService.class.getDeclaredField("engine");
+		field.setAccessible(true);
+		field.set(importService, ImportEngine.LOAD_DATA);
+
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;NoOrg;eva@test.com;;
+			""");
+
+		List<Object[]> loaded = new ArrayList<>();
+		doAnswer(invocation -> {
+			Iterator<Object[]> rows = invocation.getArgument(0);
+			rows.forEachRemaining(loaded::add);
+			return null;
+		}).when(bulkLoadService).loadEmployees(any());
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		assertEquals(1, loaded.size());
+		assertEquals("10", loaded.getFirst()[0]);
+		assertEquals("NoOrg", loaded.getFirst()[6]);
+		assertEquals(true, loaded.getFirst()[10]);
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	void importEmployeeWithSwapEngineIsRefusedTest() {
+		setField(importService, "engine", ImportEngine.SWAP);
+
+		assertThrows(IllegalStateException.class, () -> importService.importEmployee(tempDir.resolve("emp.csv")));
+
+		verify(importRunRepository, never()).start(anyString());
+	}
+
+	@Test
+	void importEmployeeWritesRejectedRowsToFailedDirTest() throws Exception {
+		// Arrange
+		Path empCsv = tempDir.resolve("emp.csv");
+		Files.writeString(empCsv, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;Eva;Ek;;;Lärare;A;eva@test.com;;
+			20;Per;Al;;;Lärare;A;per@test.com;;
+			30;Ida;Björk;;;Lärare;A;ida@test.com;;;extra
+			40;Bo;Ås;;;Lärare;A;bo@test.com;;
+			""");
+
+		when(organizationIdCache.get()).thenReturn(OrganizationIds.of(List.of("A")));
+		List<Object[]> upserted = new ArrayList<>();
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO employee "), any(BatchPreparedStatementSetter.class))).thenAnswer(invocation -> {
+			ColumnBatch.Binding binding = invocation.getArgument(1);
+			for (int i = 0; i < binding.getBatchSize(); i++) {
+				if ("20".equals(binding.row(i)[0])) {
+					throw new DataIntegrityViolationException("Data too long for column 'surname'");
+				}
+			}
+			for (int i = 0; i < binding.getBatchSize(); i++) {
+				upserted.add(binding.row(i));
+			}
+			return new int[binding.getBatchSize()];
+		});
+
+		// Act
+		importService.importEmployee(empCsv);
+
+		// Assert
+		assertEquals(List.of("10", "40"), upserted.stream().map(row -> row[0]).toList());
+
+		List<String> rejected;
+		try (var files = Files.list(tempDir.resolve("failed"))) {
+			Path deadLetters = files.findFirst().orElseThrow();
+			assertTrue(deadLetters.getFileName().toString().startsWith("emp-rejected-"));
+			rejected = Files.readAllLines(deadLetters);
+		}
+		assertEquals(3, rejected.size());
+		assertEquals("line;cause;PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode", rejected.get(0));
+		assertTrue(rejected.get(1).startsWith("3;Data too long for column 'surname';20;Per;Al;"));
+		assertTrue(rejected.get(2).startsWith("4;"));
+		// The rejected employee is still in the file and must not be deactivated
+		verify(jdbcTemplate).update(startsWith("UPDATE employee SET updated_at = CURRENT_TIMESTAMP"), any(Object[].class));
+		assertEquals(2, meterRegistry.get("csvfilereader.import.rows.rejected").tag("job", "emp-import").counter().count());
+	}
+
+		@Test
 	void importEmployee_throwsException() throws Exception {
 		// Arrange
 		Path missing = tempDir.resolve("missing.csv");
@@ -86,4 +474,19 @@ public class EmployeeImportServiceTest {
 		// Assert
 		assertTrue(exception.getMessage().startsWith("Error Importing organization from:"));
 	}
+
+	/**
+	 * Records the rows bound by each employee upsert when it is executed, written batches are cleared and reused.
+	 */
+	private List<Object[]> recordUpserts() {
+		List<Object[]> rows = new ArrayList<>();
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO employee "), any(BatchPreparedStatementSetter.class))).thenAnswer(invocation -> {
+			ColumnBatch.Binding binding = invocation.getArgument(1);
+			for (int i = 0; i < binding.getBatchSize(); i++) {
+				rows.add(binding.row(i));
+			}
+			return new int[binding.getBatchSize()];
+		});
+		return rows;
+	}
 }
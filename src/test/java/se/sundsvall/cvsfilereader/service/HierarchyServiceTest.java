@@ -0,0 +1,107 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import se.sundsvall.csvfilereader.service.HierarchyService;
+
+@ExtendWith(MockitoExtension.class)
+class HierarchyServiceTest {
+
+	private static final String ORGANIZATIONS = "SELECT org_id, parent_org_id FROM organization";
+	private static final String CLOSURE = "SELECT descendant_org_id, ancestor_org_id, depth FROM organization_closure ORDER BY descendant_org_id, depth";
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	HierarchyService hierarchyService;
+
+	@BeforeEach
+	void setup() {
+		hierarchyService = new HierarchyService(jdbcTemplate);
+	}
+
+	@Test
+	void unchangedClosureIsNotRewritten() throws Exception {
+		rows(ORGANIZATIONS, List.of(row("root", null), row("a", "root")));
+		rows(CLOSURE, List.of(row("a", "a", 0), row("a", "root", 1), row("root", "root", 0)));
+
+		assertEquals(0, hierarchyService.refreshOrganizations());
+
+		verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+	}
+
+	@Test
+	void movedOrganizationRewritesItsSubtree() throws Exception {
+		// b moves from root to a, c below b moves along
+		rows(ORGANIZATIONS, List.of(row("root", null), row("a", "root"), row("b", "a"), row("c", "b")));
+		rows(CLOSURE, List.of(
+			row("a", "a", 0), row("a", "root", 1),
+			row("b", "b", 0), row("b", "root", 1),
+			row("c", "c", 0), row("c", "b", 1), row("c", "root", 2),
+			row("root", "root", 0)));
+
+		Connection connection = mock(Connection.class);
+		PreparedStatement delete = mock(PreparedStatement.class);
+		PreparedStatement insert = mock(PreparedStatement.class);
+		when(connection.getAutoCommit()).thenReturn(true);
+		when(connection.prepareStatement(startsWith("DELETE"))).thenReturn(delete);
+		when(connection.prepareStatement(startsWith("INSERT"))).thenReturn(insert);
+		when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+
+		assertEquals(2, hierarchyService.refreshOrganizations());
+
+		verify(delete).setString(1, "b");
+		verify(delete).setString(1, "c");
+		verify(insert, times(2)).setString(2, "a");
+		verify(insert).setInt(3, 3);
+		verify(connection).commit();
+		verify(connection).setAutoCommit(true);
+	}
+
+	private void rows(String sql, List<Object[]> rows) throws SQLException {
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			Iterator<Object[]> iterator = rows.iterator();
+			while (iterator.hasNext()) {
+				Object[] row = iterator.next();
+				ResultSet rs = mock(ResultSet.class);
+				// The ancestor of a depth 0 row is not read
+				lenient().when(rs.getString(1)).thenReturn((String) row[0]);
+				lenient().when(rs.getString(2)).thenReturn((String) row[1]);
+				if (row.length > 2) {
+					when(rs.getInt(3)).thenReturn((Integer) row[2]);
+				}
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(eq(sql), any(RowCallbackHandler.class));
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+}
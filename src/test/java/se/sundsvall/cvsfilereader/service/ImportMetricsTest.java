@@ -0,0 +1,50 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+import se.sundsvall.csvfilereader.service.ImportMetrics.JobRun;
+
+class ImportMetricsTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final ImportMetrics importMetrics = new ImportMetrics(meterRegistry);
+
+	@Test
+	void jobRunIsActiveUntilStopped() {
+		JobRun run = importMetrics.startJob(ImportMetrics.ORG_IMPORT);
+
+		assertEquals(1, meterRegistry.get("csvfilereader.import.active").tag("job", "org-import").longTaskTimer().activeTasks());
+
+		run.success();
+
+		assertEquals(0, meterRegistry.get("csvfilereader.import.active").tag("job", "org-import").longTaskTimer().activeTasks());
+		assertEquals(1, meterRegistry.get("csvfilereader.import.duration").tags("job", "org-import", "outcome", "success").timer().count());
+	}
+
+	@Test
+	void rowsReadUpdatesCounterAndRate() {
+		importMetrics.rowsRead(ImportMetrics.EMP_IMPORT, 5_000, TimeUnit.SECONDS.toNanos(2));
+		importMetrics.rowsRead(ImportMetrics.EMP_IMPORT, 1_000, TimeUnit.SECONDS.toNanos(1));
+
+		assertEquals(6_000, meterRegistry.get("csvfilereader.import.rows").tag("job", "emp-import").counter().count());
+		assertEquals(1_000, meterRegistry.get("csvfilereader.import.rows.per.second").tag("job", "emp-import").gauge().value());
+	}
+
+	@Test
+	void countersAreTaggedByJob() {
+		importMetrics.deactivated(ImportMetrics.EMP_IMPORT, 3);
+		importMetrics.skipped(ImportMetrics.EMP_IMPORT, 7);
+		importMetrics.unknownOrganizations(ImportMetrics.EMP_IMPORT, 2);
+		importMetrics.deactivated(ImportMetrics.ORG_IMPORT, 0);
+
+		assertEquals(3, meterRegistry.get("csvfilereader.import.deactivated").tag("job", "emp-import").counter().count());
+		assertEquals(0, meterRegistry.get("csvfilereader.import.deactivated").tag("job", "org-import").counter().count());
+		assertEquals(7, meterRegistry.get("csvfilereader.import.rows.skipped").tag("job", "emp-import").counter().count());
+		assertEquals(2, meterRegistry.get("csvfilereader.import.unknown.organizations").tag("job", "emp-import").counter().count());
+	}
+}
@@ -0,0 +1,67 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+
+class ImportThreadsTest {
+
+	@Test
+	void platformThreadsByDefault() {
+		ImportThreads importThreads = new ImportThreads();
+
+		Thread thread = importThreads.threadFactory("test-").newThread(() -> {});
+
+		assertFalse(thread.isVirtual());
+		assertTrue(thread.isDaemon());
+		assertEquals("test-1", thread.getName());
+	}
+
+	@Test
+	void virtualThreadsWhenEnabled() {
+		ImportThreads importThreads = new ImportThreads();
+		setField(importThreads, "virtual", true);
+
+		Thread thread = importThreads.threadFactory("test-").newThread(() -> {});
+
+		assertTrue(thread.isVirtual());
+		assertEquals("test-1", thread.getName());
+	}
+
+	@Test
+	void boundsConcurrentWorkToThePoolSize() throws InterruptedException {
+		ImportThreads importThreads = new ImportThreads();
+		setField(importThreads, "virtual", true);
+		setField(importThreads, "maxPoolSize", 5);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(20);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			threads.add(importThreads.threadFactory("test-").newThread(() -> importThreads.withConnection(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				done.countDown();
+			})));
+		}
+		threads.forEach(Thread::start);
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(3, maxRunning.get());
+	}
+}
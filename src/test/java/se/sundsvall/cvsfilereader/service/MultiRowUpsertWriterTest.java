@@ -0,0 +1,84 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import se.sundsvall.csvfilereader.service.MultiRowUpsertWriter;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+
+@ExtendWith(MockitoExtension.class)
+class MultiRowUpsertWriterTest {
+
+	private static final String PREFIX = "INSERT INTO t (a, b, c) VALUES ";
+	private static final String SUFFIX = " ON DUPLICATE KEY UPDATE b = VALUES(b)";
+	private static final String SQL = PREFIX + "(?, ?, ?)" + SUFFIX;
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	MultiRowUpsertWriter writer;
+
+	ColumnBatch batch = new ColumnBatch(2, 3);
+
+	@BeforeEach
+	void setup() {
+		writer = new MultiRowUpsertWriter(jdbcTemplate);
+		batch.add("a1", "b1");
+		batch.add("a2", "b2");
+		batch.add("a3", "b3");
+	}
+
+	@Test
+	void writesBatchAsOneStatement() throws Exception {
+		when(jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class)).thenReturn(16L * 1024 * 1024);
+
+		writer.write(SQL, batch.binding(true));
+
+		ArgumentCaptor<PreparedStatementSetter> setter = ArgumentCaptor.forClass(PreparedStatementSetter.class);
+		verify(jdbcTemplate).update(eq(PREFIX + "(?, ?, ?), (?, ?, ?), (?, ?, ?)" + SUFFIX), setter.capture());
+
+		PreparedStatement ps = mock(PreparedStatement.class);
+		setter.getValue().setValues(ps);
+		verify(ps).setString(4, "a2");
+		verify(ps).setString(8, "b3");
+		verify(ps).setObject(9, true);
+	}
+
+	@Test
+	void splitsRowsToStayWithinMaxAllowedPacket() {
+		// Room for one row per statement only
+		long packet = 1024 + PREFIX.length() + SUFFIX.length() + 50;
+		when(jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class)).thenReturn(packet);
+
+		writer.write(SQL, batch.binding(true));
+
+		verify(jdbcTemplate, times(3)).update(eq(SQL), any(PreparedStatementSetter.class));
+	}
+
+	@Test
+	void failingStatementFailsTheWrite() {
+		when(jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class)).thenThrow(new DataIntegrityViolationException("unknown variable"));
+		when(jdbcTemplate.update(eq(PREFIX + "(?, ?, ?), (?, ?, ?), (?, ?, ?)" + SUFFIX), any(PreparedStatementSetter.class)))
+			.thenThrow(new DataIntegrityViolationException("Data too long"));
+
+		assertThrows(DataIntegrityViolationException.class, () -> writer.write(SQL, batch.binding(true)));
+
+		verify(jdbcTemplate, never()).update(eq(SQL), any(PreparedStatementSetter.class));
+	}
+}
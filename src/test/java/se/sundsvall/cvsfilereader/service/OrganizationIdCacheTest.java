@@ -0,0 +1,60 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache.OrganizationIds;
+
+@ExtendWith(MockitoExtension.class)
+public class OrganizationIdCacheTest {
+
+	@Mock
+	JdbcTemplate jdbcTemplate;
+
+	OrganizationIdCache cache;
+
+	@BeforeEach
+	void setup() {
+		cache = new OrganizationIdCache(jdbcTemplate);
+	}
+
+	@Test
+	void loadsOncePerInvalidation() {
+		when(jdbcTemplate.queryForList("SELECT org_id FROM organization", String.class))
+			.thenReturn(List.of("B", "A", "UNKNOWN"));
+
+		OrganizationIds first = cache.get();
+		assertSame(first, cache.get());
+
+		cache.invalidate();
+		assertNotSame(first, cache.get());
+
+		verify(jdbcTemplate, times(2)).queryForList("SELECT org_id FROM organization", String.class);
+	}
+
+	@Test
+	void containsTest() {
+		OrganizationIds ids = OrganizationIds.of(Arrays.asList("B", "A", null, "A"));
+
+		assertEquals(2, ids.size());
+		assertTrue(ids.contains("A"));
+		assertTrue(ids.contains("B"));
+		assertFalse(ids.contains("C"));
+		assertFalse(ids.contains(null));
+	}
+}
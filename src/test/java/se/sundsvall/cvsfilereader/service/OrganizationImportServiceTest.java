@@ -1,13 +1,22 @@
 package se.sundsvall.cvsfilereader.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,8 +25,17 @@ import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import se.sundsvall.csvfilereader.service.BatchSizerFactory;
+import se.sundsvall.csvfilereader.service.BulkLoadService;
+import se.sundsvall.csvfilereader.service.HierarchyService;
+import se.sundsvall.csvfilereader.service.ImportEngine;
+import se.sundsvall.csvfilereader.service.ImportMetrics;
+import se.sundsvall.csvfilereader.service.MultiRowUpsertWriter;
+import se.sundsvall.csvfilereader.service.OrganizationIdCache;
 import se.sundsvall.csvfilereader.service.OrganizationImportService;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
 
 @ExtendWith(MockitoExtension.class)
 public class OrganizationImportServiceTest {
@@ -28,14 +46,33 @@ public class OrganizationImportServiceTest {
 	@Mock
 	JdbcTemplate jdbcTemplate;
 
+	@Mock
+	BulkLoadService bulkLoadService;
+
+	@Mock
+	OrganizationIdCache organizationIdCache;
+
+	@Mock
+	MultiRowUpsertWriter multiRowUpsertWriter;
+
+	@Mock
+	HierarchyService hierarchyService;
+
 	OrganizationImportService importService;
 
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	ImportMetrics importMetrics = new ImportMetrics(meterRegistry);
+
 	@BeforeEach
 	void setup() throws Exception {
-		importService = new OrganizationImportService(jdbcTemplate);
+		importService = new OrganizationImportService(jdbcTemplate, bulkLoadService, organizationIdCache, importMetrics, new BatchSizerFactory(importMetrics),
+			multiRowUpsertWriter, hierarchyService);
 		var field = OrganizationImportService.class.getDeclaredField("batchSize");
 		field.setAccessible(true);
 		field.setInt(importService, 10);
+		setField(importService, "failedDir", tempDir.resolve("failed"));
+		setField(importService, "maxRejectedRows", 10);
 	}
 
 	@Test
@@ -52,12 +89,95 @@ public class OrganizationImportServiceTest {
 		importService.importOrganizations(orgCsv);
 
 		// Assert
-		@SuppressWarnings("unchecked")
-		ArgumentCaptor<List<Object[]>> captor = (ArgumentCaptor<List<Object[]>>) (ArgumentCaptor<?>) ArgumentCaptor.forClass(List.class);
+		ArgumentCaptor<BatchPreparedStatementSetter> captor = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
 
 		verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
 
-		assertEquals(2, captor.getValue().size());
+		ColumnBatch.Binding binding = (ColumnBatch.Binding) captor.getValue();
+		assertEquals(2, binding.getBatchSize());
+		assertArrayEquals(new Object[] {
+			"1", "A", "Org A", "13", "1"
+		}, binding.row(0));
+		assertEquals("UNKNOWN", binding.row(1)[1]);
+		verify(organizationIdCache).invalidate();
+		verify(hierarchyService, never()).refreshOrganizations();
+	}
+
+	@Test
+	void importOrganizationsRefreshesClosure() throws Exception {
+		// Arrange
+		setField(importService, "hierarchyEnabled", true);
+		Path orgCsv = tempDir.resolve("org.csv");
+		Files.writeString(orgCsv, """
+			CompanyId,OrgId,OrgName,ParentId,TreeLevel
+			1,A,Org A,13,1
+			""");
+
+		// Act
+		importService.importOrganizations(orgCsv);
+
+		// Assert
+		verify(hierarchyService).refreshOrganizations();
+	}
+
+	@Test
+	void importOrganizationsWithLoadDataEngine() throws Exception {
+		// Arrange
+		var field = OrganizationImportService.class.getDeclaredField("engine");
+		field.setAccessible(true);
+		field.set(importService, ImportEngine.LOAD_DATA);
+
+		Path orgCsv = tempDir.resolve("org.csv");
+		Files.writeString(orgCsv, """
+			CompanyId,OrgId,OrgName,ParentId,TreeLevel
+			1,A,Org A,13,1
+			1,B, NULL ,A,2
+			""");
+
+		List<Object[]> loaded = new ArrayList<>();
+		doAnswer(invocation -> {
+			Iterator<Object[]> rows = invocation.getArgument(0);
+			rows.forEachRemaining(loaded::add);
+			return null;
+		}).when(bulkLoadService).loadOrganizations(any());
+
+		// Act
+		importService.importOrganizations(orgCsv);
+
+		// Assert
+		assertEquals(3, loaded.size());
+		assertEquals("A", loaded.get(0)[1]);
+		assertEquals(null, loaded.get(1)[2]);
+		assertEquals("UNKNOWN", loaded.get(2)[1]);
+		verify(jdbcTemplate, never()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+	}
+
+	@Test
+	void importOrganizationsWithSwapEngine() throws Exception {
+		// Arrange
+		setField(importService, "engine", ImportEngine.SWAP);
+
+		Path orgCsv = tempDir.resolve("org.csv");
+		Files.writeString(orgCsv, """
+			CompanyId,OrgId,OrgName,ParentId,TreeLevel
+			1,A,Org A,13,1
+			""");
+
+		List<Object[]> loaded = new ArrayList<>();
+		doAnswer(invocation -> {
+			Iterator<Object[]> rows = invocation.getArgument(0);
+			rows.forEachRemaining(loaded::add);
+			return null;
+		}).when(bulkLoadService).swapOrganizations(any(), eq(1L));
+
+		// Act
+		importService.importOrganizations(orgCsv);
+
+		// Assert
+		assertEquals(2, loaded.size());
+		assertEquals("UNKNOWN", loaded.get(1)[1]);
+		verify(bulkLoadService, never()).loadOrganizations(any());
+		verify(organizationIdCache).invalidate();
 	}
 
 	@Test
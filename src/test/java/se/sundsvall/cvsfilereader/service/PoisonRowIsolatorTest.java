@@ -0,0 +1,101 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import se.sundsvall.csvfilereader.file.DeadLetterFile;
+import se.sundsvall.csvfilereader.service.PoisonRowIsolator;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.CsvRowException;
+
+public class PoisonRowIsolatorTest {
+
+	@TempDir
+	Path tempDir;
+
+	List<String> written = new ArrayList<>();
+
+	// Fails every statement holding a key starting with "bad"
+	Consumer<ColumnBatch.Binding> writer = rows -> {
+		for (int i = 0; i < rows.getBatchSize(); i++) {
+			if (String.valueOf(rows.row(i)[0]).startsWith("bad")) {
+				throw new DataIntegrityViolationException("Column 'name' cannot be null");
+			}
+		}
+		for (int i = 0; i < rows.getBatchSize(); i++) {
+			written.add((String) rows.row(i)[0]);
+		}
+	};
+
+	@Test
+	void isolatesRejectedRowsAndWritesTheRest() throws IOException {
+		ColumnBatch batch = batch("a", "bad1", "b", "c", "d", "bad2", "e");
+		PoisonRowIsolator isolator = isolator(10);
+
+		BitSet rejected = isolator.write(batch.binding(), 100, writer);
+		isolator.close();
+
+		assertEquals(List.of("a", "b", "c", "d", "e"), written);
+		assertEquals(BitSet.valueOf(new long[] {
+			0b100010
+		}), rejected);
+		assertEquals(2, isolator.rejected());
+
+		List<String> lines = Files.readAllLines(deadLetters());
+		assertEquals(3, lines.size());
+		assertTrue(lines.get(1).startsWith("103;Column 'name' cannot be null;bad1;"));
+		assertTrue(lines.get(2).startsWith("107;"));
+	}
+
+	@Test
+	void failsWhenMoreThanMaxRowsAreRejected() {
+		PoisonRowIsolator isolator = isolator(1);
+		isolator.rejectUnreadable(new CsvRowException(4, "Too many entries", null));
+		ColumnBatch batch = batch("a", "bad1");
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> isolator.write(batch.binding(), 0, writer));
+
+		assertTrue(exception.getMessage().startsWith("[EMP] more than 1 rejected rows"));
+	}
+
+	@Test
+	void otherFailuresAreNotIsolated() {
+		PoisonRowIsolator isolator = isolator(10);
+		ColumnBatch batch = batch("a", "b");
+
+		assertThrows(QueryTimeoutException.class, () -> isolator.write(batch.binding(), 0, rows -> {
+			throw new QueryTimeoutException("Lock wait timeout exceeded");
+		}));
+		assertEquals(0, isolator.rejected());
+	}
+
+	private PoisonRowIsolator isolator(int maxRejectedRows) {
+		return new PoisonRowIsolator("EMP", new DeadLetterFile(tempDir, "emp.csv", ';', "PersonId", "Name"), maxRejectedRows);
+	}
+
+	private Path deadLetters() throws IOException {
+		try (var files = Files.list(tempDir)) {
+			return files.findFirst().orElseThrow();
+		}
+	}
+
+	private static ColumnBatch batch(String... keys) {
+		ColumnBatch batch = new ColumnBatch(2, keys.length);
+		for (String key : keys) {
+			batch.add(key, "name");
+		}
+		return batch;
+	}
+}
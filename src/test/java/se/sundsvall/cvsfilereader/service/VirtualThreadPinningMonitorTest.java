@@ -0,0 +1,64 @@
+package se.sundsvall.cvsfilereader.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnJre;
+import org.junit.jupiter.api.condition.JRE;
+import se.sundsvall.csvfilereader.service.ImportThreads;
+import se.sundsvall.csvfilereader.service.VirtualThreadPinningMonitor;
+
+class VirtualThreadPinningMonitorTest {
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void notStartedWithPlatformThreads() {
+		VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(new ImportThreads(), meterRegistry);
+
+		monitor.start();
+
+		assertFalse(monitor.isRunning());
+	}
+
+	// Later releases no longer pin virtual threads blocking inside synchronized
+	@Test
+	@EnabledOnJre(JRE.JAVA_21)
+	void countsPinnedVirtualThreads() throws InterruptedException {
+		ImportThreads importThreads = new ImportThreads();
+		setField(importThreads, "virtual", true);
+		VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(importThreads, meterRegistry);
+		setField(monitor, "pinnedThreshold", Duration.ofMillis(20));
+
+		monitor.start();
+		try {
+			Object lock = new Object();
+			Thread.ofVirtual().start(() -> {
+				synchronized (lock) {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}).join();
+
+			Timer pinned = meterRegistry.get("csvfilereader.threads.pinned").timer();
+			long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (pinned.count() == 0 && System.nanoTime() < deadline) {
+				Thread.sleep(50);
+			}
+			assertTrue(monitor.isRunning());
+			assertEquals(1, pinned.count());
+		} finally {
+			monitor.stop();
+		}
+		assertFalse(monitor.isRunning());
+	}
+}
@@ -0,0 +1,66 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.AdaptiveBatchSizer;
+
+class AdaptiveBatchSizerTest {
+
+	private final List<Integer> published = new ArrayList<>();
+
+	@Test
+	void growsTowardsTargetAtMostDoublingPerBatch() {
+		AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 10_000, Duration.ofMillis(500), published::add);
+
+		// 1000 rows in 100 ms, 5000 rows would hit the target
+		sizer.record(1000, TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(2000, sizer.size());
+
+		sizer.record(2000, TimeUnit.MILLISECONDS.toNanos(200));
+		assertEquals(4000, sizer.size());
+
+		sizer.record(4000, TimeUnit.MILLISECONDS.toNanos(400));
+		assertEquals(5000, sizer.size());
+		assertEquals(List.of(1000, 2000, 4000, 5000), published);
+	}
+
+	@Test
+	void shrinksWhenSlowButNotBelowMinimum() {
+		AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 400, 10_000, Duration.ofMillis(500), published::add);
+
+		sizer.record(1000, TimeUnit.SECONDS.toNanos(5));
+		assertEquals(500, sizer.size());
+
+		sizer.record(500, TimeUnit.SECONDS.toNanos(5));
+		assertEquals(400, sizer.size());
+	}
+
+	@Test
+	void neverExceedsMaximum() {
+		AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(20_000, 100, 3000, Duration.ofSeconds(1), published::add);
+		assertEquals(3000, sizer.size());
+
+		sizer.record(3000, TimeUnit.MILLISECONDS.toNanos(1));
+		assertEquals(3000, sizer.size());
+	}
+
+	@Test
+	void fixedSizeIgnoresLatency() {
+		AdaptiveBatchSizer sizer = AdaptiveBatchSizer.fixed(500, published::add);
+
+		sizer.record(500, TimeUnit.SECONDS.toNanos(60));
+		assertEquals(500, sizer.size());
+		assertEquals(List.of(500), published);
+	}
+
+	@Test
+	void rejectsInvalidBounds() {
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizer(100, 500, 200, Duration.ofSeconds(1), published::add));
+	}
+}
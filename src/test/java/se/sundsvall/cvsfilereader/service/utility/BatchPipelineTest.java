@@ -0,0 +1,164 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.BatchPipeline;
+
+public class BatchPipelineTest {
+
+	@Test
+	void writesAllBatchesWithParallelWriters() {
+		Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+		AtomicInteger written = new AtomicInteger();
+
+		try (BatchPipeline<List<Integer>> pipeline = new BatchPipeline<>("test", 3, 2, batch -> {
+			writerThreads.add(Thread.currentThread().getName());
+			written.addAndGet(batch.size());
+		})) {
+			for (int i = 0; i < 100; i++) {
+				pipeline.submit(List.of(i, i, i));
+			}
+			pipeline.finish();
+		}
+
+		assertEquals(300, written.get());
+		assertTrue(writerThreads.stream().allMatch(name -> name.startsWith("test-writer-")));
+	}
+
+	@Test
+	void writesOnThreadsOfTheGivenFactory() {
+		Set<Boolean> virtualWriters = ConcurrentHashMap.newKeySet();
+		AtomicInteger written = new AtomicInteger();
+
+		try (BatchPipeline<List<Integer>> pipeline = new BatchPipeline<>("test", 4, 2, Thread.ofVirtual().name("test-virtual-", 1).factory(), batch -> {
+			virtualWriters.add(Thread.currentThread().isVirtual());
+			written.addAndGet(batch.size());
+		})) {
+			for (int i = 0; i < 100; i++) {
+				pipeline.submit(List.of(i));
+			}
+			pipeline.finish();
+		}
+
+		assertEquals(100, written.get());
+		assertEquals(Set.of(true), virtualWriters);
+	}
+
+	@Test
+	void writesLastBatchSubmittedWhileWritersStop() throws InterruptedException {
+		for (int run = 0; run < 40; run++) {
+			AtomicInteger written = new AtomicInteger();
+
+			try (BatchPipeline<List<Integer>> pipeline = new BatchPipeline<>("test", 4, 1, batch -> written.incrementAndGet())) {
+				// Writers that poll without waiting, once the first poll has timed out, so that the final submit and
+				// finish land between a poll and the check for the end of the reader as often as possible
+				setField(pipeline, "pollMillis", 0L);
+				Thread.sleep(120);
+
+				pipeline.submit(List.of(run));
+				pipeline.finish();
+			}
+
+			assertEquals(1, written.get(), "batch of run " + run);
+		}
+	}
+
+	@Test
+	void writesOnCallingThreadWithSingleWriter() {
+		String caller = Thread.currentThread().getName();
+		AtomicInteger written = new AtomicInteger();
+
+		try (BatchPipeline<List<Integer>> pipeline = new BatchPipeline<>("test", 1, 2, batch -> {
+			assertEquals(caller, Thread.currentThread().getName());
+			written.addAndGet(batch.size());
+		})) {
+			pipeline.submit(List.of(1, 2));
+			pipeline.finish();
+		}
+
+		assertEquals(2, written.get());
+	}
+
+	@Test
+	void firstWriterFailureStopsReader() {
+		AtomicInteger written = new AtomicInteger();
+
+		try (BatchPipeline<List<Integer>> pipeline = new BatchPipeline<>("test", 2, 1, batch -> {
+			if (batch.contains(3)) {
+				throw new IllegalArgumentException("bad batch");
+			}
+			written.incrementAndGet();
+		})) {
+			IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+				for (int i = 0; i < 10_000; i++) {
+					pipeline.submit(List.of(i));
+				}
+				pipeline.finish();
+			});
+
+			assertEquals("bad batch", exception.getMessage());
+			assertTrue(written.get() < 9_999);
+		}
+	}
+
+	@Test
+	void closeWaitsForWritersAndDropsQueuedBatches() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		List<Integer> written = new CopyOnWriteArrayList<>();
+		CountDownLatch started = new CountDownLatch(2);
+
+		BatchPipeline<Integer> pipeline = new BatchPipeline<>("test", 2, 10, batch -> {
+			running.incrementAndGet();
+			started.countDown();
+			busy(200);
+			written.add(batch);
+			running.decrementAndGet();
+		});
+		for (int i = 0; i < 6; i++) {
+			pipeline.submit(i);
+		}
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// The reader failed, finish is never called
+		pipeline.close();
+
+		assertEquals(0, running.get());
+		assertEquals(2, written.size());
+	}
+
+	@Test
+	void closeFailsWhenWriterOutlivesTimeout() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+
+		BatchPipeline<Integer> pipeline = new BatchPipeline<>("test", 2, 1, batch -> {
+			started.countDown();
+			busy(500);
+		});
+		setField(pipeline, "closeTimeoutMillis", 50L);
+		pipeline.submit(1);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, pipeline::close);
+
+		assertEquals("test writers still running 50 ms after close", exception.getMessage());
+	}
+
+	// A write that, like many JDBC calls, does not react to interrupts
+	private static void busy(long millis) {
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		while (System.nanoTime() < until) {
+			Thread.onSpinWait();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.ColumnBatch;
+import se.sundsvall.csvfilereader.service.utility.ImportUtil;
+
+class ColumnBatchTest {
+
+	@Test
+	void deduplicatesOnlyTheGivenColumns() {
+		ColumnBatch batch = new ColumnBatch(2, 4, 1);
+
+		batch.add(new String("10"), new String("Lärare"));
+		batch.add(new String("10"), new String("Lärare"));
+
+		assertSame(batch.get(0, 1), batch.get(1, 1));
+		assertNotSame(batch.get(0, 0), batch.get(1, 0));
+	}
+
+	@Test
+	void growsBeyondInitialCapacityAndClears() {
+		ColumnBatch batch = new ColumnBatch(1, 1);
+
+		batch.add("a");
+		batch.add("b");
+		batch.add("c");
+
+		assertEquals(3, batch.size());
+		assertEquals("c", batch.get(2, 0));
+
+		batch.clear();
+
+		assertTrue(batch.isEmpty());
+		assertNull(batch.get(0, 0));
+	}
+
+	@Test
+	void bindsColumnsFollowedByConstants() throws Exception {
+		ColumnBatch batch = new ColumnBatch(2, 2);
+		batch.add("10", null);
+		batch.add("11", "x");
+		PreparedStatement ps = mock(PreparedStatement.class);
+
+		ColumnBatch.Binding binding = batch.binding(new int[] {
+			1
+		}, true);
+		binding.setValues(ps, 0);
+
+		assertEquals(1, binding.getBatchSize());
+		verify(ps).setString(1, "11");
+		verify(ps).setString(2, "x");
+		verify(ps).setObject(3, true);
+		assertArrayEquals(new Object[] {
+			"11", "x", true
+		}, binding.row(0));
+
+		batch.binding().setValues(ps, 0);
+
+		verify(ps).setNull(2, Types.VARCHAR);
+	}
+
+	@Test
+	void hashesLikeTheObjectArrayRow() {
+		ColumnBatch batch = new ColumnBatch(3, 1);
+		batch.add("10", null, "A");
+
+		assertEquals(ImportUtil.rowHash(new Object[] {
+			"10", null, "A", true
+		}), ImportUtil.rowHash(batch, 0, true));
+	}
+
+	@Test
+	void poolReusesReleasedBatches() {
+		ColumnBatch.Pool pool = new ColumnBatch.Pool(() -> new ColumnBatch(1, 1));
+
+		ColumnBatch first = pool.acquire();
+		first.add("a");
+		pool.release(first);
+
+		assertSame(first, pool.acquire());
+		assertTrue(first.isEmpty());
+		assertNotSame(first, pool.acquire());
+	}
+}
@@ -0,0 +1,27 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.CommitWatermark;
+
+class CommitWatermarkTest {
+
+	@Test
+	void advancesOnlyOverContiguousBatches() {
+		CommitWatermark watermark = new CommitWatermark(0);
+
+		assertEquals(-1, watermark.complete(100, 100));
+		assertEquals(-1, watermark.complete(300, 50));
+		assertEquals(200, watermark.complete(0, 100));
+		assertEquals(350, watermark.complete(200, 100));
+		assertEquals(350, watermark.get());
+	}
+
+	@Test
+	void startsFromResumedPosition() {
+		CommitWatermark watermark = new CommitWatermark(1000);
+
+		assertEquals(1500, watermark.complete(1000, 500));
+	}
+}
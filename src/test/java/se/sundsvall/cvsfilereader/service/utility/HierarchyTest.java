@@ -0,0 +1,45 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.Hierarchy;
+
+class HierarchyTest {
+
+	@Test
+	void ancestorsNearestFirst() {
+		Map<String, String> parents = new HashMap<>();
+		parents.put("root", null);
+		parents.put("a", "root");
+		parents.put("b", "a");
+		parents.put("c", "outside");
+
+		Map<String, List<String>> paths = Hierarchy.ancestors(parents);
+
+		assertEquals(List.of(), paths.get("root"));
+		assertEquals(List.of("root"), paths.get("a"));
+		assertEquals(List.of("a", "root"), paths.get("b"));
+		assertEquals(List.of("outside"), paths.get("c"));
+	}
+
+	@Test
+	void cycleEndsPath() {
+		Map<String, List<String>> paths = Hierarchy.ancestors(Map.of("a", "b", "b", "c", "c", "a", "self", "self"));
+
+		assertEquals(List.of("b", "c"), paths.get("a"));
+		assertEquals(List.of(), paths.get("self"));
+	}
+
+	@Test
+	void changedOnlyIncludesMovedSubtree() {
+		Map<String, List<String>> previous = Hierarchy.ancestors(Map.of("a", "root", "b", "a", "c", "root", "gone", "root"));
+		Map<String, List<String>> current = Hierarchy.ancestors(Map.of("a", "c", "b", "a", "c", "root", "new", "root"));
+
+		assertEquals(Set.of("a", "b", "gone", "new"), Hierarchy.changed(previous, current));
+	}
+}
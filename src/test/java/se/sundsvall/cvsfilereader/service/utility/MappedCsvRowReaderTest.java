@@ -0,0 +1,181 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.sundsvall.csvfilereader.service.EmployeeImportService;
+import se.sundsvall.csvfilereader.service.OrganizationImportService;
+import se.sundsvall.csvfilereader.service.utility.CsvFormat;
+import se.sundsvall.csvfilereader.service.utility.CsvReaderType;
+import se.sundsvall.csvfilereader.service.utility.CsvRowException;
+import se.sundsvall.csvfilereader.service.utility.CsvRowReader;
+import se.sundsvall.csvfilereader.service.utility.MappedCsvRowReader;
+
+public class MappedCsvRowReaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void readsQuotedTrimmedAndNullValues() throws IOException {
+		Path file = tempDir.resolve("emp.csv");
+		Files.write(file, ("﻿PersonId;Extra;Givenname;Lastname;Title\r\n" +
+			"10; x ;  Åsa  ;NULL;\"Lärare; \"\"bästa\"\"\"\r\n" +
+			"\r\n" +
+			"11;;null;  ;\"multi\nline\"\n" +
+			"12;;Bo").getBytes(StandardCharsets.UTF_8));
+
+		List<String[]> rows = new ArrayList<>();
+		try (MappedCsvRowReader reader = new MappedCsvRowReader(file, ';', new String[] {
+			"PersonId", "Givenname", "Lastname", "Title", "Missing"
+		})) {
+			reader.forEachRemaining(rows::add);
+			assertFalse(reader.hasNext());
+		}
+
+		assertEquals(3, rows.size());
+		assertArrayEquals(new String[] {
+			"10", "Åsa", null, "Lärare; \"bästa\"", null
+		}, rows.get(0));
+		assertArrayEquals(new String[] {
+			"11", null, null, "multi\nline", null
+		}, rows.get(1));
+		assertArrayEquals(new String[] {
+			"12", "Bo", null, null, null
+		}, rows.get(2));
+	}
+
+	@Test
+	void sameRowsAsJacksonForEmployees() throws IOException {
+		Path file = tempDir.resolve("emp.csv");
+		Files.writeString(file, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;förnamn;efternamn;;;Lärare;NoOrg;eva@test.com;;
+			11; Anna ;NULL;070-1234567;060-123456;"Chef; IT";42;anna@test.com;10;MGR
+			12;\"Per \"\"Pelle\"\"\";Persson;null;  ;;42;;11;
+			""");
+
+		assertSameRows(file, EmployeeImportService.CSV_FORMAT);
+	}
+
+	@Test
+	void sameRowsAsJacksonForOrganizations() throws IOException {
+		Path file = tempDir.resolve("org.csv");
+		Files.writeString(file, """
+			CompanyId,OrgId,OrgName,ParentId,TreeLevel
+			1,13,Sundsvalls kommun,,1
+			1,42,"IT, drift",13,2
+			1,43, NULL ,42,3
+			""");
+
+		assertSameRows(file, OrganizationImportService.CSV_FORMAT);
+	}
+
+	@Test
+	void sameRowsAsJacksonForMalformedRows() throws IOException {
+		Path file = tempDir.resolve("emp.csv");
+		Files.writeString(file, """
+			PersonId;Givenname;Lastname;WorkMobile;WorkPhone;Title;OrgId;PrimaryEMailAddress;ManagerId;ManagerCode
+			10;Anna;Andersson;;;Lärare;42;anna@test.com;;
+			11;Bo;Berg;;;Lärare;42;bo@test.com;;;extra
+			12;Cia;Carlsson;;;Lärare;42;cia@test.com;;;
+			13;Dan;"Dahl;;;Lärare;42;dan@test.com;;
+			14;Eva;Ek;;;Lärare;42;eva@test.com;;
+			""");
+
+		assertSameRows(file, EmployeeImportService.CSV_FORMAT);
+
+		List<String[]> rows = readAll(CsvReaderType.MAPPED, file, EmployeeImportService.CSV_FORMAT);
+		assertEquals(4, rows.size());
+		assertEquals("10", rows.get(0)[0]);
+		assertNull(rows.get(1));
+		assertEquals("12", rows.get(2)[0]);
+		// The unterminated quote consumes the rest of the file
+		assertNull(rows.get(3));
+	}
+
+	@Test
+	void rejectsRowsWithMalformedUtf8AndGoesOn() throws IOException {
+		Path file = tempDir.resolve("org.csv");
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		content.writeBytes("CompanyId,OrgId,OrgName,ParentId,TreeLevel\n1,13,\"Sundsvalls\nkommun\",,1\n1,42,IT ".getBytes(StandardCharsets.UTF_8));
+		content.writeBytes(new byte[] {
+			(byte) 0xC3, (byte) 0x28
+		});
+		content.writeBytes(",13,2\n1,43,Åkeri,42,3\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(file, content.toByteArray());
+
+		try (MappedCsvRowReader reader = new MappedCsvRowReader(file, ',', OrganizationImportService.CSV_FORMAT.columns())) {
+			assertEquals("13", reader.next()[1]);
+			assertTrue(reader.hasNext());
+			CsvRowException exception = assertThrows(CsvRowException.class, reader::next);
+			assertEquals(4, exception.line());
+			assertEquals("Åkeri", reader.next()[2]);
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	@Test
+	void compressedFileIsReadThroughJackson() throws IOException {
+		Path file = tempDir.resolve("org.csv");
+		Files.writeString(file, """
+			CompanyId,OrgId,OrgName,ParentId,TreeLevel
+			1,13,Sundsvalls kommun,,1
+			1,42,"IT, drift",13,2
+			""");
+		Path compressed = tempDir.resolve("org.csv.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+			Files.copy(file, out);
+		}
+
+		List<String[]> plain = readAll(CsvReaderType.MAPPED, file, OrganizationImportService.CSV_FORMAT);
+		List<String[]> decompressed = readAll(CsvReaderType.MAPPED, compressed, OrganizationImportService.CSV_FORMAT);
+
+		assertEquals(2, decompressed.size());
+		for (int i = 0; i < plain.size(); i++) {
+			assertArrayEquals(plain.get(i), decompressed.get(i));
+		}
+	}
+
+	private void assertSameRows(Path file, CsvFormat<?> format) throws IOException {
+		List<String[]> jackson = readAll(CsvReaderType.JACKSON, file, format);
+		List<String[]> mapped = readAll(CsvReaderType.MAPPED, file, format);
+
+		assertEquals(jackson.size(), mapped.size());
+		for (int i = 0; i < jackson.size(); i++) {
+			assertArrayEquals(jackson.get(i), mapped.get(i));
+		}
+	}
+
+	/**
+	 * The rows of the file, null for a row the reader rejected.
+	 */
+	private List<String[]> readAll(CsvReaderType type, Path file, CsvFormat<?> format) throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		try (CsvRowReader reader = CsvRowReader.open(type, file, format)) {
+			while (reader.hasNext()) {
+				try {
+					rows.add(reader.next());
+				} catch (CsvRowException e) {
+					rows.add(null);
+				}
+			}
+		}
+		return rows;
+	}
+}
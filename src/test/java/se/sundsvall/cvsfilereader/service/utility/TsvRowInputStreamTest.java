@@ -0,0 +1,37 @@
+package se.sundsvall.cvsfilereader.service.utility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.csvfilereader.service.utility.TsvRowInputStream;
+
+public class TsvRowInputStreamTest {
+
+	@Test
+	void encodesRowsInLoadDataFormat() throws IOException {
+		List<Object[]> rows = List.of(
+			new Object[] {
+				"10", null, "Lärare", true
+			},
+			new Object[] {
+				"tab\there", "back\\slash", "new\nline", false
+			});
+
+		TsvRowInputStream input = new TsvRowInputStream(rows.iterator());
+		String encoded = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+
+		assertEquals("10\t\\N\tLärare\t1\ntab\\there\tback\\\\slash\tnew\\nline\t0\n", encoded);
+		assertEquals(2, input.getRowCount());
+	}
+
+	@Test
+	void emptyWhenNoRows() throws IOException {
+		TsvRowInputStream input = new TsvRowInputStream(List.<Object[]>of().iterator());
+
+		assertEquals(-1, input.read());
+		assertEquals(0, input.getRowCount());
+	}
+}